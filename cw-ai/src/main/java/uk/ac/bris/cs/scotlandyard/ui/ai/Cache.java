@@ -1,169 +1,230 @@
 package uk.ac.bris.cs.scotlandyard.ui.ai;
 
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
 import uk.ac.bris.cs.scotlandyard.model.Ticket;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
 
 // Class that caches the distance and the valid moves from all nodes (and to all nodes).
+// Both tables are loaded by memory mapping a cache file, so loading is near instant and every game reading the same
+// file shares one copy in the page cache. The valid moves are a flat array, the distances are compressed, see
+// DistanceTable. The file starts with a header that records the format version, the table sizes, the fingerprint of
+// the map the tables were computed on, a checksum of the tables and the size of the distance table.
+// The distance table only fits maps whose nodes are below NODES. A cache made by onDemand has no file: it finds its
+// distances when they're asked for instead, see OnDemandDistances, and its valid moves are sized to the map.
 public class Cache{
 
-    final private File distanceFile = new File("distance.dat");
-    final private File validMoveFile = new File("moves.dat");
+    private static final int MAGIC = 0x53594443, VERSION = 3;
+    private static final int HEADER_SIZE = 64;
 
-    private byte[][][][][] distance = new byte[200][200][12][9][5];
-    private int[][][][][][] validMoves = new int[200][3][3][3][2][3];
+    // Table sizes. Ticket counts above these are clamped.
+    static final int NODES = 200, TAXI = 12, BUS = 9, UNDERGROUND = 5;
+    static final int MOVE_TAXI = 3, MOVE_BUS = 3, MOVE_UNDERGROUND = 3, MOVE_DOUBLE = 2, MOVE_SECRET = 3;
+    private static final int[] DIMENSIONS = {NODES, TAXI, BUS, UNDERGROUND,
+            MOVE_TAXI, MOVE_BUS, MOVE_UNDERGROUND, MOVE_DOUBLE, MOVE_SECRET};
+
+    private static final int MOVE_CONFIGURATIONS = MOVE_TAXI * MOVE_BUS * MOVE_UNDERGROUND * MOVE_DOUBLE * MOVE_SECRET;
+    private static final int MOVE_SIZE = NODES * MOVE_CONFIGURATIONS;
+
+    private final long fingerprint;
+    private final DistanceOracle distance;
+    private final IntBuffer validMoves;
+
+    private Cache(long fingerprint, DistanceOracle distance, IntBuffer validMoves){
+        this.fingerprint = fingerprint;
+        this.distance = distance;
+        this.validMoves = validMoves;
+    }
 
     /**
-     * Main constructor for the Cache class
+     * Loads a cache file by memory mapping it
+     *
+     * @param file the cache file, see write
+     * @param fingerprint the fingerprint of the map the cache must have been computed on
+     * @return the cache
+     * @throws IOException if the file can't be read, was written by another version, for another map or is corrupt
      */
-    Cache(){
-        // If the files exist, load the contents into memory as matrices.
-        if(distanceFile.exists() && validMoveFile.exists()){
-            try{
-                FileInputStream in = new FileInputStream(distanceFile);
-                byte[] tempDist = new byte[200 * 200 * 12 * 9 * 5];
-                // Reads the file as a byte array, then stores it as a byte matrix.
-                in.read(tempDist);
-                int i = 0;
-                for(int start = 1; start < 200; start++)
-                    for(int to = 1; to < 200; to++)
-                        for(int taxi = 0; taxi < 12; taxi++)
-                            for(int bus = 0; bus < 9; bus++)
-                                for(int underground = 0; underground < 5; underground++)
-                                    distance[start][to][taxi][bus][underground] = tempDist[i++];
-
-                in = new FileInputStream(validMoveFile);
-                byte[] tempMoves = new byte[4 * 200 * 162];
-                // Reads the file as a byte array, then stores it as an int matrix.
-                in.read(tempMoves);
-                i = 0;
-
-                for(int node = 1; node < 200; node++)
-                    for(int taxi = 0; taxi < 3; taxi++)
-                        for(int bus = 0; bus < 3; bus++)
-                            for(int underground = 0; underground < 3; underground++)
-                                for(int doublet = 0; doublet < 2; doublet++)
-                                    for(int secret = 0; secret < 3; secret++){
-                                        // Compute the int from 4 consecutive bytes in the byte array
-                                        for(int b = 0; b < 4; b++)
-                                            validMoves[node][taxi][bus][underground][doublet][secret] =
-                                                    (validMoves[node][taxi][bus][underground][doublet][secret] << 8) | (tempMoves[b + i] & 0xFF);
-                                        i += 4;
-                                    }
-            }
-            catch(Exception e){
-                System.out.println("Exception: " + e);
-            }
+    static Cache load(File file, long fingerprint) throws IOException{
+        if(!file.isFile())
+            throw new IOException(file + " does not exist");
+        MappedByteBuffer mapped;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            if(channel.size() < HEADER_SIZE)
+                throw new IOException(file + " is not a cache file");
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
         }
+
+        if(mapped.getInt() != MAGIC)
+            throw new IOException(file + " is not a cache file");
+        if(mapped.getInt() != VERSION)
+            throw new IOException(file + " was written by another version");
+        for(int dimension : DIMENSIONS)
+            if(mapped.getInt() != dimension)
+                throw new IOException(file + " has tables of another size");
+        if(mapped.getLong() != fingerprint)
+            throw new IOException(file + " was computed on another map");
+        long checksum = mapped.getLong();
+        int distanceSize = mapped.getInt();
+        if(distanceSize < 0 || mapped.capacity() != HEADER_SIZE + 4L * MOVE_SIZE + DistanceTable.bytes(distanceSize))
+            throw new IOException(file + " has the wrong size");
+
+        mapped.position(HEADER_SIZE);
+        ByteBuffer tables = mapped.slice();
+        if(checksum(tables) != checksum)
+            throw new IOException(file + " is corrupt");
+
+        ByteBuffer moves = tables.duplicate().limit(4 * MOVE_SIZE);
+        DistanceTable distance = DistanceTable.read(tables.duplicate().position(4 * MOVE_SIZE), distanceSize);
+        return new Cache(fingerprint, distance, moves.slice().asIntBuffer());
     }
 
     /**
-     * Constructor for when the files are missing
+     * Constructor for when the file is missing, computes both tables
      *
      * @param model the model used to generate the distances
      */
     Cache(ScotlandYardAIModel model){
-        // Generates distances from everywhere with every configuration.
-        List<ScotlandYardAIPlayer> allPossiblePlayers = new ArrayList<>();
-        for(int start = 1; start < 200; start++)
-            for(int taxi = 0; taxi < 12; taxi++)
-                for(int bus = 0; bus < 9; bus++)
-                    for(int underground = 0; underground < 5; underground++)
-                        allPossiblePlayers.add(new ScotlandYardAIPlayer(start, taxi, bus, underground));
-        // Creates a BFS object to generate all distances, then saves them to cache
-        BFS allBfs = new BFS(model.getGraph(), allPossiblePlayers);
-        for(int start = 1; start < 200; start++)
-            for(int to = 1; to < 200; to++)
-                for(int taxi = 0; taxi < 12; taxi++)
-                    for(int bus = 0; bus < 9; bus++)
-                        for(int underground = 0; underground < 5; underground++)
-                            distance[start][to][taxi][bus][underground] = (byte) allBfs.getDistances()[start][to][taxi][bus][underground].distance();
-
-        // Generates number of valid moves
-        for(int node = 1; node < 200; node++)
-            for(int taxi = 0; taxi < 3; taxi++)
-                for(int bus = 0; bus < 3; bus++)
-                    for(int underground = 0; underground < 3; underground++)
-                        for(int doublet = 0; doublet < 2; doublet++)
-                            for(int secret = 0; secret < 3; secret++)
-                                validMoves[node][taxi][bus][underground][doublet][secret] =
-                                        model.getValidMovesForPlayer(
-                                               new ScotlandYardAIPlayer(node, taxi, bus, underground, doublet, secret)
-                                        ).size();
+        // Generates distances from everywhere with every configuration, then keeps them compressed.
+        this(model.getCompiledGraph().fingerprint(),
+                DistanceTable.compress(DistanceGenerator.generate(model.getCompiledGraph())),
+                validMoves(model, NODES));
+    }
+
+    /**
+     * Makes a cache for any map, that finds its distances when they're asked for. It's ready at once, but can't be
+     * written to a file
+     *
+     * @param model the model used to generate the valid moves
+     * @param memoSize the number of distances remembered
+     * @return the cache
+     */
+    static Cache onDemand(ScotlandYardAIModel model, int memoSize){
+        return new Cache(model.getCompiledGraph().fingerprint(),
+                new OnDemandDistances(model.getCompiledGraph(), memoSize),
+                validMoves(model, model.getCompiledGraph().maxNode() + 1));
+    }
+
+    // Generates the number of valid moves from the nodes below the given one with every configuration.
+    private static IntBuffer validMoves(ScotlandYardAIModel model, int nodes){
+        IntBuffer validMoves = IntBuffer.allocate(nodes * MOVE_CONFIGURATIONS);
+        MoveBuffer moves = new MoveBuffer();
+        for(int node = 1; node < nodes; node++)
+            for(int taxi = 0; taxi < MOVE_TAXI; taxi++)
+                for(int bus = 0; bus < MOVE_BUS; bus++)
+                    for(int underground = 0; underground < MOVE_UNDERGROUND; underground++)
+                        for(int doublet = 0; doublet < MOVE_DOUBLE; doublet++)
+                            for(int secret = 0; secret < MOVE_SECRET; secret++)
+                                validMoves.put(moveIndex(node, taxi, bus, underground, doublet, secret),
+                                        model.generateMovesFrom(
+                                                node, GameState.pack(taxi, bus, underground, doublet, secret), moves
+                                        ));
+        return validMoves;
     }
 
     /**
-     *  Writes the matrices to file
+     * Writes the tables to a cache file. The file is written next to its final name and then moved in place, so a
+     * reader never sees a partly written file
+     *
+     * @param file the cache file
+     * @throws IOException if the file can't be written
+     * @throws IllegalStateException if the cache was made by onDemand
      */
-    void writeToFile(){
+    void write(File file) throws IOException{
+        if(!(distance instanceof DistanceTable))
+            throw new IllegalStateException("Only a cache with a distance table can be written");
+        DistanceTable table = (DistanceTable) distance;
+        ByteBuffer tables = ByteBuffer.allocate(4 * MOVE_SIZE + table.bytes());
+        for(int i = 0; i < MOVE_SIZE; i++)
+            tables.putInt(validMoves.get(i));
+        table.write(tables);
+        tables.flip();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION);
+        for(int dimension : DIMENSIONS)
+            header.putInt(dimension);
+        header.putLong(fingerprint).putLong(checksum(tables)).putInt(table.size());
+        header.clear();
+
+        Path target = file.getAbsoluteFile().toPath();
+        Path temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
         try{
-            OutputStream o = new FileOutputStream(distanceFile);
-            for(int start = 1; start < 200; start++)
-                for(int to = 1; to < 200; to++)
-                    for(int taxi = 0; taxi < 12; taxi++)
-                        for(int bus = 0; bus < 9; bus++)
-                            o.write(distance[start][to][taxi][bus]);
-            o.close();
-            o = new FileOutputStream(validMoveFile);
-            for(int node = 1; node < 200; node++)
-                for(int taxi = 0; taxi < 3; taxi++)
-                    for(int bus = 0; bus < 3; bus++)
-                        for(int underground = 0; underground < 3; underground++)
-                            for(int doublet = 0; doublet < 2; doublet++)
-                                for(int secret = 0; secret < 3; secret++)
-                                    for(int b = 0; b < 4; b++)
-                                        o.write((byte) (validMoves[node][taxi][bus][underground][doublet][secret] >> ((3 - b) * 8)));
-            o.close();
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)){
+                while(header.hasRemaining())
+                    channel.write(header);
+                while(tables.hasRemaining())
+                    channel.write(tables);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         }
-        catch (Exception e){
-            System.out.println("Exception: " + e);
+        finally{
+            Files.deleteIfExists(temp);
         }
     }
 
+    private static long checksum(ByteBuffer tables){
+        CRC32 crc = new CRC32();
+        crc.update(tables.duplicate());
+        return crc.getValue();
+    }
+
+    private static int moveIndex(int node, int taxi, int bus, int underground, int doublet, int secret){
+        return ((((node * MOVE_TAXI + taxi) * MOVE_BUS + bus) * MOVE_UNDERGROUND + underground)
+                * MOVE_DOUBLE + doublet) * MOVE_SECRET + secret;
+    }
+
+    /**
+     * @return the fingerprint of the map the tables were computed on
+     */
+    long fingerprint(){
+        return fingerprint;
+    }
+
     /**
      *
      * @param from start node
      * @param to end node
-     * @param ticketMap player ticket map
+     * @param tickets player tickets, packed as in GameState
      * @return returns the distance from the start node to the end node with the given ticket configuration to start
      */
-    int getDistance(int from, int to, HashMap<Ticket, Integer> ticketMap){
-        int taxi = ticketMap.getOrDefault(Ticket.TAXI, 0),
-            bus = ticketMap.getOrDefault(Ticket.BUS, 0),
-            underground = ticketMap.getOrDefault(Ticket.UNDERGROUND, 0);
-        taxi = Integer.min(taxi, 11);
-        bus = Integer.min(bus, 8);
-        underground = Integer.min(underground, 4);
-
-        return distance[from][to][taxi][bus][underground];
+    int getDistance(int from, int to, long tickets){
+        return distance.distance(from, to, GameState.count(tickets, Ticket.TAXI),
+                GameState.count(tickets, Ticket.BUS), GameState.count(tickets, Ticket.UNDERGROUND));
+    }
+
+    /**
+     *
+     * @param tickets the available tickets, packed as in GameState
+     * @return the ticket configuration of the table of valid moves, for getValidMoves
+     */
+    int moveConfiguration(long tickets){
+        int taxi = Integer.min(GameState.count(tickets, Ticket.TAXI), MOVE_TAXI - 1),
+            bus = Integer.min(GameState.count(tickets, Ticket.BUS), MOVE_BUS - 1),
+            underground = Integer.min(GameState.count(tickets, Ticket.UNDERGROUND), MOVE_UNDERGROUND - 1),
+            doublet = Integer.min(GameState.count(tickets, Ticket.DOUBLE), MOVE_DOUBLE - 1),
+            secret = Integer.min(GameState.count(tickets, Ticket.SECRET), MOVE_SECRET - 1);
+
+        return moveIndex(0, taxi, bus, underground, doublet, secret);
     }
 
     /**
      *
      * @param node the node
-     * @param ticketMap the available tickets
+     * @param configuration the available tickets, as returned by moveConfiguration
      * @return returns the number of valid moves from certain node with given ticket configuration
      */
-    public int getValidMoves(int node, HashMap<Ticket, Integer> ticketMap){
-        int taxi = ticketMap.getOrDefault(Ticket.TAXI, 0),
-            bus = ticketMap.getOrDefault(Ticket.BUS, 0),
-            underground = ticketMap.getOrDefault(Ticket.UNDERGROUND, 0),
-            doublet = ticketMap.getOrDefault(Ticket.DOUBLE, 0),
-            secret = ticketMap.getOrDefault(Ticket.SECRET, 0);
-
-        taxi = Integer.min(taxi, 2);
-        bus = Integer.min(bus, 2);
-        underground = Integer.min(underground, 2);
-        doublet = Integer.min(doublet, 1);
-        secret = Integer.min(secret, 2);
-
-        return validMoves[node][taxi][bus][underground][doublet][secret];
+    int getValidMoves(int node, int configuration){
+        return validMoves.get(node * MOVE_CONFIGURATIONS + configuration);
     }
 
 }
@@ -0,0 +1,91 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import java.util.Arrays;
+
+// Class that computes the distance table of a Cache, layer by layer over the ticket configurations instead of a search
+// per start node and configuration.
+// With no tickets a player can only stay where it is. With some tickets, the distance from a start node is one more
+// than the shortest distance from a node one edge away, with a ticket less of the edge's type, which an earlier layer
+// already holds. So every layer is the element-wise minimum of the rows of the earlier layers, one row per edge of the
+// start node, over all the end nodes at once. The distances are the shortest ones with the tickets.
+class DistanceGenerator{
+
+    // Ticket configurations are numbered as in DistanceTable, (taxi * BUS + bus) * UNDERGROUND + underground, so a
+    // configuration with a ticket less always comes first.
+    private static final int CONFIGURATIONS = Cache.TAXI * Cache.BUS * Cache.UNDERGROUND;
+    private static final int PAIRS = Cache.NODES * Cache.NODES;
+    // Taxi, bus and underground: the step between configurations that differ by one ticket.
+    private static final int[] STRIDE = {Cache.BUS * Cache.UNDERGROUND, Cache.UNDERGROUND, 1};
+    // Longer than any distance, a path uses at most one ticket a move. One more still fits a byte.
+    private static final byte UNREACHABLE = Cache.TAXI + Cache.BUS + Cache.UNDERGROUND;
+
+    private DistanceGenerator(){
+
+    }
+
+    /**
+     * Computes the distance table
+     *
+     * @param graph the map; its nodes must be below Cache.NODES
+     * @return the distance table, configuration * Cache.NODES^2 + from * Cache.NODES + to, 0 where a node can't be
+     * reached
+     */
+    static byte[] generate(CompiledGraph<Transport> graph){
+        if(graph.maxNode() >= Cache.NODES)
+            throw new IllegalArgumentException("Map has more than " + (Cache.NODES - 1) + " nodes");
+
+        // The edges the table counts, as the row of their target and the ticket type they use. Ferries need a
+        // secret ticket, which isn't counted.
+        int[] first = new int[Cache.NODES + 1];
+        int[] targetRow = new int[graph.edgeCount()];
+        int[] ticket = new int[graph.edgeCount()];
+        int edges = 0;
+        for(int node = 0; node < Cache.NODES; node++){
+            first[node] = edges;
+            if(graph.containsNode(node))
+                for(int e = graph.firstEdge(node); e < graph.endEdge(node); e++){
+                    Ticket type = Ticket.fromTransport(graph.data(e));
+                    int t = type == Ticket.TAXI ? 0 : type == Ticket.BUS ? 1 : type == Ticket.UNDERGROUND ? 2 : -1;
+                    if(t < 0)
+                        continue;
+                    targetRow[edges] = graph.target(e) * Cache.NODES;
+                    ticket[edges++] = t;
+                }
+        }
+        first[Cache.NODES] = edges;
+
+        byte[] distance = new byte[CONFIGURATIONS * PAIRS];
+        int[] counts = new int[3];
+        for(int c = 0; c < CONFIGURATIONS; c++){
+            counts[0] = c / STRIDE[0];
+            counts[1] = c / STRIDE[1] % Cache.BUS;
+            counts[2] = c % Cache.UNDERGROUND;
+            int layer = c * PAIRS;
+            Arrays.fill(distance, layer, layer + PAIRS, UNREACHABLE);
+
+            for(int from = 1; from < Cache.NODES; from++){
+                int row = layer + from * Cache.NODES;
+                for(int e = first[from]; e < first[from + 1]; e++){
+                    if(counts[ticket[e]] == 0)
+                        continue;
+                    int previous = (c - STRIDE[ticket[e]]) * PAIRS + targetRow[e];
+                    for(int to = 0; to < Cache.NODES; to++){
+                        int through = distance[previous + to] + 1;
+                        if(through < distance[row + to])
+                            distance[row + to] = (byte) through;
+                    }
+                }
+                distance[row + from] = 0;
+            }
+        }
+
+        for(int i = 0; i < distance.length; i++)
+            if(distance[i] == UNREACHABLE)
+                distance[i] = 0;
+        return distance;
+    }
+}
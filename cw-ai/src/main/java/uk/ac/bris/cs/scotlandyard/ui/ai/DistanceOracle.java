@@ -0,0 +1,20 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+// Interface of the distances a Cache answers for the evaluator and the search: the number of moves a player needs
+// to get from one node to another with its taxi, bus and underground tickets. DistanceTable looks them up in the table
+// computed for the whole map, OnDemandDistances searches for them when they're asked for.
+interface DistanceOracle{
+
+    /**
+     * Must be safe to call from several threads at once
+     *
+     * @param from start node
+     * @param to end node
+     * @param taxi the taxi tickets
+     * @param bus the bus tickets
+     * @param underground the underground tickets
+     * @return the distance from the start node to the end node with the tickets, 0 if it can't be reached or is the
+     * start node
+     */
+    int distance(int from, int to, int taxi, int bus, int underground);
+}
@@ -0,0 +1,219 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Class that holds the distance table of a Cache compressed, about a megabyte instead of the 21 MB of the full table,
+// so the lookups of a search stay in the CPU's cache.
+// A distance rarely grows with more tickets, so for every (from, to) pair only the ticket counts at which it drops
+// are kept: points of (distance, taxi, bus, underground), each the lowest counts some distance is reached with. The
+// distance with some tickets is the shortest one of the points they cover, or 0 if they cover none. Ticket counts
+// where a table's distance is longer than that are kept as exceptions, so any table compresses exactly. The shortest
+// distances DistanceGenerator computes never need one.
+// Every pair has an index of 8 bytes that holds its shortest point, which is all most lookups read, and where its
+// other entries are. Every entry is a short: the pair's exceptions in ascending order of ticket counts, then its
+// other points in ascending order of distance, so the first point covered by the tickets is the shortest.
+// The table only fits maps whose nodes are below Cache.NODES, other maps search for their distances, see
+// OnDemandDistances.
+final class DistanceTable implements DistanceOracle{
+
+    private static final int CONFIGURATIONS = Cache.TAXI * Cache.BUS * Cache.UNDERGROUND;
+    private static final int PAIRS = Cache.NODES * Cache.NODES;
+
+    // A point is (distance, taxi, bus, underground) in 5, 4, 4 and 3 bits, from the high bits down. An exception is
+    // the ticket configuration, numbered as in the full table, and the distance in the low 5 bits.
+    private static final int DISTANCE_SHIFT = 11, TAXI_SHIFT = 7, BUS_SHIFT = 3;
+    private static final int DISTANCE_BITS = 5, TICKET_MASK = 15, UNDERGROUND_MASK = 7;
+    private static final int MAX_DISTANCE = (1 << DISTANCE_BITS) - 1;
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // The index of a pair: its shortest point, or 0 if it has none, which covers any tickets and reads as
+    // unreachable, its number of exceptions, its number of other points and the offset of its entries.
+    private static final int EXCEPTIONS_SHIFT = 16, POINTS_SHIFT = 26, OFFSET_SHIFT = 36;
+    private static final int COUNT_MASK = (1 << POINTS_SHIFT - EXCEPTIONS_SHIFT) - 1;
+    private static final long EXCEPTIONS = (long) COUNT_MASK << EXCEPTIONS_SHIFT;
+    private static final int MAX_ENTRIES = 1 << Long.SIZE - 1 - OFFSET_SHIFT;
+
+    private final long[] pairs;
+    private final short[] entries;
+
+    private DistanceTable(long[] pairs, short[] entries){
+        this.pairs = pairs;
+        this.entries = entries;
+    }
+
+    /**
+     * Compresses a full distance table
+     *
+     * @param table the distances, as returned by DistanceGenerator.generate
+     * @return the compressed table
+     */
+    static DistanceTable compress(byte[] table){
+        if(table.length != PAIRS * CONFIGURATIONS)
+            throw new IllegalArgumentException("Table has the wrong size");
+        long[] pairs = new long[PAIRS];
+        short[] entries = new short[1 << 16];
+        int size = 0;
+
+        // The shortest distance of the points covered by each configuration.
+        int[] covered = new int[CONFIGURATIONS];
+        int[] points = new int[CONFIGURATIONS];
+        short[] exceptions = new short[CONFIGURATIONS];
+        for(int pair = 0; pair < PAIRS; pair++){
+            int exceptionCount = 0, pointCount = 0;
+
+            // Configurations are numbered so that those with a ticket less come first.
+            for(int taxi = 0; taxi < Cache.TAXI; taxi++)
+                for(int bus = 0; bus < Cache.BUS; bus++)
+                    for(int underground = 0; underground < Cache.UNDERGROUND; underground++){
+                        int c = (taxi * Cache.BUS + bus) * Cache.UNDERGROUND + underground;
+                        int distance = table[c * PAIRS + pair];
+                        if(distance > MAX_DISTANCE)
+                            throw new IllegalArgumentException("Distance " + distance + " is too long");
+                        int best = UNREACHABLE;
+                        if(taxi > 0)
+                            best = Integer.min(best, covered[c - Cache.BUS * Cache.UNDERGROUND]);
+                        if(bus > 0)
+                            best = Integer.min(best, covered[c - Cache.UNDERGROUND]);
+                        if(underground > 0)
+                            best = Integer.min(best, covered[c - 1]);
+
+                        int value = distance == 0 ? UNREACHABLE : distance;
+                        if(value < best){
+                            points[pointCount++] = distance << DISTANCE_SHIFT | taxi << TAXI_SHIFT
+                                    | bus << BUS_SHIFT | underground;
+                            best = value;
+                        }
+                        else if(value > best)
+                            exceptions[exceptionCount++] = (short) (c << DISTANCE_BITS | distance);
+                        covered[c] = best;
+                    }
+
+            // Points are kept in ascending order of distance, the distance being their high bits.
+            Arrays.sort(points, 0, pointCount);
+            int others = Integer.max(0, pointCount - 1);
+            if(size + exceptionCount + others > MAX_ENTRIES)
+                throw new IllegalArgumentException("Too many entries for the index");
+            if(entries.length - size < exceptionCount + others)
+                entries = Arrays.copyOf(entries, Integer.max(entries.length * 2, size + CONFIGURATIONS));
+            pairs[pair] = (pointCount == 0 ? 0 : points[0]) | (long) exceptionCount << EXCEPTIONS_SHIFT
+                    | (long) others << POINTS_SHIFT | (long) size << OFFSET_SHIFT;
+            System.arraycopy(exceptions, 0, entries, size, exceptionCount);
+            size += exceptionCount;
+            for(int i = 1; i < pointCount; i++)
+                entries[size++] = (short) points[i];
+        }
+        return new DistanceTable(pairs, Arrays.copyOf(entries, size));
+    }
+
+    /**
+     * Reads a table into the heap. It's small enough to copy, and arrays are faster to look up than a mapped buffer
+     *
+     * @param buffer the buffer the table was written to, from its position, see write; its position is moved past
+     * the table
+     * @param size the number of entries of the table
+     * @return the table
+     */
+    static DistanceTable read(ByteBuffer buffer, int size){
+        long[] pairs = new long[PAIRS];
+        short[] entries = new short[size];
+        buffer.asLongBuffer().get(pairs);
+        buffer.position(buffer.position() + 8 * PAIRS);
+        buffer.asShortBuffer().get(entries);
+        buffer.position(buffer.position() + 2 * size);
+        return new DistanceTable(pairs, entries);
+    }
+
+    /**
+     * Writes the table, the index of every pair then the entries
+     *
+     * @param buffer the buffer, with bytes() bytes remaining; its position is moved past the table
+     */
+    void write(ByteBuffer buffer){
+        buffer.asLongBuffer().put(pairs);
+        buffer.position(buffer.position() + 8 * PAIRS);
+        buffer.asShortBuffer().put(entries);
+        buffer.position(buffer.position() + 2 * entries.length);
+    }
+
+    /**
+     * @param size a number of entries
+     * @return the bytes a table of that many entries is written in
+     */
+    static long bytes(int size){
+        return 8L * PAIRS + 2L * size;
+    }
+
+    /**
+     * @return the bytes the table is written in
+     */
+    int bytes(){
+        return (int) bytes(entries.length);
+    }
+
+    /**
+     * @return the number of entries, not counting the index
+     */
+    int size(){
+        return entries.length;
+    }
+
+    /**
+     * Ticket counts above the table's sizes are clamped
+     *
+     * @param from start node, below Cache.NODES
+     * @param to end node, below Cache.NODES
+     * @param taxi the taxi tickets
+     * @param bus the bus tickets
+     * @param underground the underground tickets
+     * @return the distance from the start node to the end node with the tickets, as in the full table
+     */
+    @Override
+    public int distance(int from, int to, int taxi, int bus, int underground){
+        taxi = Integer.min(taxi, Cache.TAXI - 1);
+        bus = Integer.min(bus, Cache.BUS - 1);
+        underground = Integer.min(underground, Cache.UNDERGROUND - 1);
+        long index = pairs[from * Cache.NODES + to];
+        int first = (int) index & 0xffff;
+        if((index & EXCEPTIONS) == 0 && covers(first, taxi, bus, underground))
+            return first >>> DISTANCE_SHIFT;
+        return search(index, taxi, bus, underground);
+    }
+
+    private static boolean covers(int point, int taxi, int bus, int underground){
+        return (point >>> TAXI_SHIFT & TICKET_MASK) <= taxi && (point >>> BUS_SHIFT & TICKET_MASK) <= bus
+                && (point & UNDERGROUND_MASK) <= underground;
+    }
+
+    // The distance of a pair whose shortest point doesn't settle it: its exception for the tickets if it has one,
+    // otherwise its shortest point covered by the tickets. Kept out of distance, so that stays small enough to be
+    // inlined into the evaluator.
+    private int search(long index, int taxi, int bus, int underground){
+        int i = (int) (index >>> OFFSET_SHIFT);
+        int exceptions = (int) (index >>> EXCEPTIONS_SHIFT) & COUNT_MASK;
+        if(exceptions > 0){
+            int configuration = (taxi * Cache.BUS + bus) * Cache.UNDERGROUND + underground;
+            int low = i, high = i + exceptions - 1;
+            while(low <= high){
+                int middle = (low + high) >>> 1;
+                int found = entries[middle] >>> DISTANCE_BITS;
+                if(found < configuration)
+                    low = middle + 1;
+                else if(found > configuration)
+                    high = middle - 1;
+                else return entries[middle] & MAX_DISTANCE;
+            }
+            i += exceptions;
+        }
+
+        int first = (int) index & 0xffff;
+        if(covers(first, taxi, bus, underground))
+            return first >>> DISTANCE_SHIFT;
+        for(int end = i + ((int) (index >>> POINTS_SHIFT) & COUNT_MASK); i < end; i++){
+            int point = entries[i] & 0xffff;
+            if(covers(point, taxi, bus, underground))
+                return point >>> DISTANCE_SHIFT;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,99 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.Arrays;
+
+// Class that scores game states from the cache's tables alone, without generating moves. Each detective's distance
+// to mr.X is kept from the last state scored and only looked up again if the detective, its tickets or mr.X's
+// location changed, so scoring the state after a detective's move looks up one distance.
+final class Evaluator{
+
+    private final Cache cache;
+
+    // For each detective: its distance to mr.X, and the location, tickets and mr.X location it was looked up for.
+    private int[] distances = new int[0], locations, targets;
+    private long[] tickets;
+
+    /**
+     * Main constructor for Evaluator
+     *
+     * @param cache the tables the states are scored from; not null
+     */
+    Evaluator(Cache cache){
+        if(cache == null)
+            throw new NullPointerException("Cache is null");
+        this.cache = cache;
+    }
+
+    /**
+     * Scores a state by the number of moves of a player, read from the table of valid moves, and the distances of
+     * the detectives to mr.X
+     *
+     * @param state the state to be scored
+     * @param player the index of the player whose moves are counted, the one that made the last move
+     * @return the score for the given state
+     */
+    double score(GameState state, int player){
+        int moves = cache.getValidMoves(state.location(player), cache.moveConfiguration(state.tickets(player)));
+        return score(distanceScore(state, state.location(GameState.MRX)), moves);
+    }
+
+    /**
+     * Combines a distance score with a number of moves. Rises with the number of moves
+     *
+     * @param distanceScore the distance score of mr.X's location, see distanceScore
+     * @param moves the number of moves from the table of valid moves
+     * @return the score
+     */
+    static double score(double distanceScore, int moves){
+        // Normalized to a maximum of 100. 364 is the maximum from the valid moves table. With no moves, one passes.
+        return (double) Integer.max(1, moves) / 364 * 100 * 20 + distanceScore;
+    }
+
+    /**
+     * The score of a state in which the detectives force mr.X's capture, see Tablebase. Below the score of any
+     * state in which mr.X isn't caught, which is above -28000 as his nearest detective is at least 1 away, and above
+     * that of one in which he is, below -53000, so a later capture scores higher
+     *
+     * @param rounds the number of rounds to the capture, at most Tablebase.MAX_ROUNDS
+     * @return the score
+     */
+    static double captureScore(int rounds){
+        return -50000.0 + 1000 * rounds;
+    }
+
+    /**
+     * The part of the score that depends on the distances of the detectives to mr.X
+     *
+     * @param state the state, which gives the detectives' locations and tickets
+     * @param mrXLocation mr.X's location, which need not be his location in the state
+     * @return the distance score
+     */
+    double distanceScore(GameState state, int mrXLocation){
+        int players = state.players();
+        if(distances.length != players){
+            distances = new int[players];
+            locations = new int[players];
+            targets = new int[players];
+            tickets = new long[players];
+            Arrays.fill(targets, -1);
+        }
+
+        int minDistance = 1000, sum = 0;
+        for(int p = 1; p < players; p++){
+            int location = state.location(p);
+            long t = state.tickets(p);
+            if(targets[p] != mrXLocation || locations[p] != location || tickets[p] != t){
+                distances[p] = cache.getDistance(location, mrXLocation, t);
+                locations[p] = location;
+                targets[p] = mrXLocation;
+                tickets[p] = t;
+            }
+            sum += distances[p];
+            minDistance = Integer.min(minDistance, distances[p]);
+        }
+
+        // Normalized to 100, the maximum distance in the table is 16.
+        double avgDistance = (double) sum / (players - 1);
+        return avgDistance / 16 * 100 * 10 - 800.0 / (minDistance + 1) * 70;
+    }
+}
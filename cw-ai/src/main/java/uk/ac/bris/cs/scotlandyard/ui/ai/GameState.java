@@ -0,0 +1,370 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.gamekit.graph.NodeBits;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Compact game state used by the search. Moves are made and unmade in place, so a search node costs no allocation.
+final class GameState{
+
+    // Player 0 is always mr.X.
+    static final int MRX = 0;
+
+    // Each ticket count takes 8 bits of a player's packed ticket field, at offset Ticket.ordinal() * 8.
+    private static final int TICKET_BITS = 8;
+    private static final long TICKET_MASK = (1L << TICKET_BITS) - 1;
+    private static final Ticket[] TICKETS = Ticket.values();
+
+    // Every move pushes four words: mover's tickets, mr.X's tickets, location, player and round, and the hash.
+    private static final int UNDO_WORDS = 4;
+
+    private final Colour[] colours;
+    private final int[] locations;
+    private final long[] tickets;
+    private final long[] occupied;
+    private final int rounds;
+    private int round;
+    private int current;
+
+    // Zobrist hash of the state, kept up to date by every move.
+    private final Zobrist zobrist;
+    private long hash;
+
+    // Allocated on the first move, so copies stay small.
+    private long[] undo = null;
+    private int undoSize = 0;
+
+    /**
+     * Constructs a new state
+     *
+     * @param colours the colours of all players, mr.X first
+     * @param locations the locations of all players
+     * @param tickets the packed tickets of all players, see pack
+     * @param round the current round
+     * @param current the index of the player whose turn it is
+     * @param rounds the total number of rounds
+     * @param maxNode the largest node on the map
+     */
+    GameState(Colour[] colours, int[] locations, long[] tickets, int round, int current, int rounds, int maxNode){
+        this(colours, locations, tickets, round, current, rounds, maxNode, new Zobrist(locations.length, maxNode));
+    }
+
+    /**
+     * Constructs a new state that hashes with given keys, shared by the states of a game
+     *
+     * @param colours the colours of all players, mr.X first
+     * @param locations the locations of all players
+     * @param tickets the packed tickets of all players, see pack
+     * @param round the current round
+     * @param current the index of the player whose turn it is
+     * @param rounds the total number of rounds
+     * @param maxNode the largest node on the map
+     * @param zobrist the hash keys, for as many players and at least as many nodes; not null
+     */
+    GameState(Colour[] colours, int[] locations, long[] tickets, int round, int current, int rounds, int maxNode,
+              Zobrist zobrist){
+        this.colours = colours.clone();
+        this.locations = locations.clone();
+        this.tickets = tickets.clone();
+        this.round = round;
+        this.current = current;
+        this.rounds = rounds;
+
+        // Only detectives block nodes.
+        occupied = NodeBits.create(maxNode);
+        for(int p = 1; p < locations.length; p++)
+            NodeBits.add(occupied, locations[p]);
+
+        this.zobrist = zobrist;
+        hash = zobrist.round(round) ^ zobrist.current(current);
+        for(int p = 0; p < locations.length; p++){
+            hash ^= zobrist.location(p, locations[p]);
+            for(int t = 0; t < TICKETS.length; t++)
+                hash ^= zobrist.tickets(p, t, count(tickets[p], t));
+        }
+    }
+
+    /**
+     * Constructs a copy of a state, without its undo history
+     *
+     * @param state previous state
+     */
+    GameState(GameState state){
+        colours = state.colours;
+        locations = state.locations.clone();
+        tickets = state.tickets.clone();
+        occupied = state.occupied.clone();
+        rounds = state.rounds;
+        round = state.round;
+        current = state.current;
+        zobrist = state.zobrist;
+        hash = state.hash;
+    }
+
+    /**
+     * Constructs a state from a ScotlandYardView and possibly a new location for mr.X
+     *
+     * @param view the view the state is constructed from
+     * @param maxNode the largest node on the map
+     * @param zobrist the hash keys, for the view's players and map; not null
+     * @param location if mr.X should be moved to a new location, this should be != -1
+     * @return the new state
+     */
+    static GameState fromView(ScotlandYardView view, int maxNode, Zobrist zobrist, int location){
+        List<Colour> players = view.getPlayers();
+        Colour[] colours = players.toArray(new Colour[0]);
+        int[] locations = new int[colours.length];
+        long[] tickets = new long[colours.length];
+
+        for(int p = 0; p < colours.length; p++){
+            Colour c = colours[p];
+            if(c != Colour.BLACK || location == -1)
+                locations[p] = view.getPlayerLocation(c).orElse(0);
+            else locations[p] = location;
+
+            for(Ticket t : TICKETS)
+                tickets[p] = withCount(tickets[p], t, view.getPlayerTickets(c, t).orElse(0));
+        }
+
+        return new GameState(colours, locations, tickets, view.getCurrentRound(),
+                players.indexOf(view.getCurrentPlayer()), view.getRounds().size(), maxNode, zobrist);
+    }
+
+    /**
+     * Packs a ticket configuration into a single long
+     *
+     * @return the packed tickets
+     */
+    static long pack(int taxi, int bus, int underground, int doublet, int secret){
+        long packed = 0;
+        packed = withCount(packed, Ticket.TAXI, taxi);
+        packed = withCount(packed, Ticket.BUS, bus);
+        packed = withCount(packed, Ticket.UNDERGROUND, underground);
+        packed = withCount(packed, Ticket.DOUBLE, doublet);
+        packed = withCount(packed, Ticket.SECRET, secret);
+        return packed;
+    }
+
+    /**
+     * @param packed the packed tickets
+     * @param t the ticket type
+     * @return the number of tickets of type t in the packed tickets
+     */
+    static int count(long packed, Ticket t){
+        return count(packed, t.ordinal());
+    }
+
+    /**
+     * @param packed the packed tickets
+     * @param ticket the ticket ordinal
+     * @return the number of tickets with the given ordinal in the packed tickets
+     */
+    static int count(long packed, int ticket){
+        return (int) ((packed >>> (ticket * TICKET_BITS)) & TICKET_MASK);
+    }
+
+    /**
+     * Unpacks tickets into an array indexed by Ticket.ordinal(), as MoveGenerator takes them
+     *
+     * @param packed the packed tickets
+     * @param counts the array to fill; length at least the number of ticket types
+     */
+    static void unpack(long packed, int[] counts){
+        for(int t = 0; t < TICKETS.length; t++)
+            counts[t] = count(packed, t);
+    }
+
+    // Counts are clamped to the field, the view can report negative counts after a double secret move.
+    private static long withCount(long packed, Ticket t, int count){
+        int shift = t.ordinal() * TICKET_BITS;
+        long clamped = Math.max(0, Math.min(count, (int) TICKET_MASK));
+        return (packed & ~(TICKET_MASK << shift)) | (clamped << shift);
+    }
+
+    int players(){
+        return locations.length;
+    }
+
+    Colour colour(int player){
+        return colours[player];
+    }
+
+    int location(int player){
+        return locations[player];
+    }
+
+    long tickets(int player){
+        return tickets[player];
+    }
+
+    int tickets(int player, Ticket t){
+        return count(tickets[player], t);
+    }
+
+    // The returned set must not be modified.
+    long[] occupied(){
+        return occupied;
+    }
+
+    boolean isOccupied(int node){
+        return NodeBits.contains(occupied, node);
+    }
+
+    int round(){
+        return round;
+    }
+
+    int rounds(){
+        return rounds;
+    }
+
+    int current(){
+        return current;
+    }
+
+    // Zobrist hash of the round, current player, locations and tickets.
+    long hash(){
+        return hash;
+    }
+
+    // Number of moves that can currently be unmade.
+    int depth(){
+        return undoSize / UNDO_WORDS;
+    }
+
+    /**
+     * Makes a single ticket move for the current player
+     *
+     * @param ticket the ordinal of the ticket used
+     * @param destination the destination of the move
+     */
+    void playTicket(int ticket, int destination){
+        int p = current;
+        push(p);
+        take(p, ticket);
+        moveTo(p, destination);
+
+        // If it's mr.X's turn, increment round. If it's a detective's, give the ticket to mr.X.
+        if(p == MRX)
+            setRound(round + 1);
+        else give(MRX, ticket);
+
+        setCurrent((p + 1) % locations.length);
+    }
+
+    /**
+     * Makes a double move for mr.X, who must be the current player
+     *
+     * @param first the ordinal of the first ticket
+     * @param firstDestination the first destination, only the final one is stored
+     * @param second the ordinal of the second ticket
+     * @param secondDestination the final destination
+     */
+    void playDouble(int first, int firstDestination, int second, int secondDestination){
+        int p = current;
+        push(p);
+        take(p, Ticket.DOUBLE.ordinal());
+        take(p, first);
+        take(p, second);
+        moveTo(p, secondDestination);
+
+        // A double move takes two rounds.
+        setRound(round + 2);
+        setCurrent((p + 1) % locations.length);
+    }
+
+    /**
+     * Passes the turn of the current player
+     */
+    void playPass(){
+        push(current);
+        setCurrent((current + 1) % locations.length);
+    }
+
+    /**
+     * Moves a player without making a move, as when guessing where mr.X is hidden. Must not be called while there
+     * are moves to unmake
+     *
+     * @param player the index of the player
+     * @param node the player's new location
+     */
+    void place(int player, int node){
+        if(undoSize != 0)
+            throw new IllegalStateException("Can't place a player with moves to undo");
+        moveTo(player, node);
+    }
+
+    /**
+     * Unmakes the last move made
+     *
+     * @throws IllegalStateException if there are no moves to unmake
+     */
+    void undo(){
+        if(undoSize == 0)
+            throw new IllegalStateException("No moves to undo");
+
+        long savedHash = undo[--undoSize];
+        long packed = undo[--undoSize];
+        tickets[MRX] = undo[--undoSize];
+        int p = (int) ((packed >>> 16) & 0xFF);
+        tickets[p] = undo[--undoSize];
+
+        moveTo(p, (int) (packed & 0xFFFF));
+        current = p;
+        round = (int) (packed >>> 24);
+        hash = savedHash;
+    }
+
+    // Saves everything a move can change.
+    private void push(int p){
+        if(undo == null)
+            undo = new long[UNDO_WORDS * 16];
+        else if(undoSize + UNDO_WORDS > undo.length)
+            undo = Arrays.copyOf(undo, undo.length * 2);
+        undo[undoSize++] = tickets[p];
+        undo[undoSize++] = tickets[MRX];
+        undo[undoSize++] = locations[p] | ((long) p << 16) | ((long) round << 24);
+        undo[undoSize++] = hash;
+    }
+
+    // Removes a ticket, never taking a count below zero.
+    private void take(int p, int ticket){
+        int c = count(tickets[p], ticket);
+        if(c > 0){
+            tickets[p] -= 1L << (ticket * TICKET_BITS);
+            hash ^= zobrist.tickets(p, ticket, c) ^ zobrist.tickets(p, ticket, c - 1);
+        }
+    }
+
+    // Adds a ticket, never overflowing the count's field.
+    private void give(int p, int ticket){
+        int c = count(tickets[p], ticket);
+        if(c < TICKET_MASK){
+            tickets[p] += 1L << (ticket * TICKET_BITS);
+            hash ^= zobrist.tickets(p, ticket, c) ^ zobrist.tickets(p, ticket, c + 1);
+        }
+    }
+
+    private void setRound(int r){
+        hash ^= zobrist.round(round) ^ zobrist.round(r);
+        round = r;
+    }
+
+    private void setCurrent(int p){
+        hash ^= zobrist.current(current) ^ zobrist.current(p);
+        current = p;
+    }
+
+    private void moveTo(int p, int location){
+        if(p != MRX){
+            NodeBits.remove(occupied, locations[p]);
+            NodeBits.add(occupied, location);
+        }
+        hash ^= zobrist.location(p, locations[p]) ^ zobrist.location(p, location);
+        locations[p] = location;
+    }
+}
@@ -0,0 +1,85 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.ReachBits;
+import uk.ac.bris.cs.scotlandyard.ai.ManagedAI;
+import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+// AI that plays either side by Monte Carlo tree search, using all of its move time. The detectives guess where mr.X
+// is from the nodes he could be at, tracked by a MrXBelief.
+@ManagedAI("Monte Carlo")
+public class MonteCarloAI implements PlayerFactory {
+
+	private Cache cache = null;
+	private CompiledGraph<Transport> graph = null;
+	// Built once per game and shared by its models.
+	private ReachBits reach = null;
+	private MoveGenerator generator = null;
+	private Zobrist zobrist = null;
+	private MrXBelief belief = null;
+	private MonteCarloSearch search = null;
+
+	@Override
+	// Called at the beginning of the game, used to load needed data and to start tracking mr.X.
+	public List<Spectator> createSpectators(ScotlandYardView view){
+		// A factory reused without finishing its last game gives that game's resources back first.
+		finish();
+		graph = CompiledGraph.compile(view.getGraph(), Transport.class);
+		reach = new ReachBits(graph);
+		generator = new MoveGenerator(graph);
+		zobrist = new Zobrist(view.getPlayers().size(), graph.maxNode());
+		cache = SharedCache.acquire(new ScotlandYardAIModel(view, graph, reach, generator, zobrist, -1));
+		belief = new MrXBelief(view, graph);
+		search = new MonteCarloSearch(cache, SearchConfig.threads(), SearchConfig.deterministic());
+
+		List<Spectator> spectators = new ArrayList<>();
+		spectators.add(belief);
+		return spectators;
+	}
+
+	@Override
+	// Called when the game is over, stops the search threads and gives back the cache.
+	public void finish(){
+		if(search != null)
+			search.shutdown();
+		if(cache != null)
+			SharedCache.release(cache);
+		search = null;
+		cache = null;
+		graph = null;
+		reach = null;
+		generator = null;
+		zobrist = null;
+		belief = null;
+	}
+
+	@Override
+	public Player createPlayer(Colour colour) {
+		return new MyPlayer();
+	}
+
+	private class MyPlayer implements Player {
+		@Override
+		public void makeMove(ScotlandYardView view, int location, Set<Move> moves, Consumer<Move> callback) {
+			long deadline = System.nanoTime() + SearchConfig.moveTime() * 1000000;
+			// Mr.X knows where he is, the detectives only know where he could be.
+			boolean mrX = view.getCurrentPlayer().isMrX();
+			ScotlandYardAIModel model = new ScotlandYardAIModel(view, graph, reach, generator, zobrist,
+					mrX ? location : -1);
+			int move = search.search(model, mrX ? null : belief.possible().clone(), deadline);
+
+			// The search only plays moves it generated, so one the game doesn't offer is a bug in the search. It's
+			// reported, and the game goes on with a move it does offer.
+			Move chosen = model.toMove(model.getCurrentPlayerNumber(), move);
+			if(!moves.contains(chosen)){
+				System.out.println("Search chose " + chosen + ", which is not a valid move");
+				chosen = moves.iterator().next();
+			}
+			callback.accept(chosen);
+		}
+	}
+}
@@ -0,0 +1,334 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.gamekit.graph.NodeBits;
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Class that chooses moves by information set Monte Carlo tree search. Every playout guesses where mr.X is from the
+// nodes he could be at, walks down one tree shared by all threads and plays the game out to its end.
+// Threads count a visit to every node they walk through before its playout is done, a virtual loss that spreads them
+// over the tree instead of all following the same path. When a detective searches, mr.X's moves in the tree are
+// told apart by their tickets only, as the detectives can't see where he went.
+class MonteCarloSearch{
+
+    // Exploration constant of the UCB formula.
+    private static final double EXPLORATION = 0.7;
+    // Chance that a playout move is the greedy one, rather than a random one.
+    private static final double GREEDY = 0.8;
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+    // The destination bits of a packed move, cleared to tell mr.X's moves apart by their tickets only.
+    private static final int DESTINATIONS = PackedMove.MAX_DESTINATION | PackedMove.MAX_DESTINATION << 16;
+
+    private final Cache cache;
+    private final int threads;
+    private final boolean deterministic;
+    private final ForkJoinPool pool;
+
+    /**
+     * Main constructor for MonteCarloSearch
+     *
+     * @param cache the distance cache used by the playouts; not null
+     * @param threads the number of threads to search with
+     * @param deterministic if true, a fixed number of playouts is run on one thread and the clock is ignored, so the
+     * result does not depend on timing
+     */
+    MonteCarloSearch(Cache cache, int threads, boolean deterministic){
+        this.cache = cache;
+        this.threads = threads;
+        this.deterministic = deterministic;
+        pool = new ForkJoinPool(threads);
+    }
+
+    // A node of the tree, reached by a move or, for hidden moves of mr.X, by the tickets of a move.
+    // The statistics of a node are guarded by its parent's lock.
+    private static final class Node{
+        final int key;
+        final int mover;
+        final List<Node> children = new ArrayList<>();
+        int visits = 0, availability = 0;
+        double reward = 0;
+
+        Node(int key, int mover){
+            this.key = key;
+            this.mover = mover;
+        }
+    }
+
+    /**
+     * Finds the best move for the current player of a model
+     *
+     * @param root current game model; not modified
+     * @param possible the nodes mr.X could be at as NodeBits, or null if his location in the model is known
+     * @param deadline the System.nanoTime() by which the search must end
+     * @return the most played packed move of the current player
+     */
+    int search(ScotlandYardAIModel root, long[] possible, long deadline){
+        Node tree = new Node(PackedMove.NONE, -1);
+        if(deterministic)
+            new Worker(root, possible, tree, new SplittableRandom(SEED), SearchConfig.playouts(), deadline).call();
+        else{
+            List<Callable<Void>> workers = new ArrayList<>();
+            SplittableRandom seeds = new SplittableRandom();
+            for(int i = 0; i < threads; i++)
+                workers.add(new Worker(root, possible, tree, seeds.split(), Integer.MAX_VALUE, deadline));
+            try{
+                for(Future<Void> worker : pool.invokeAll(workers))
+                    worker.get();
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            catch(ExecutionException e){
+                throw new IllegalStateException("Search failed", e.getCause());
+            }
+        }
+
+        Node best = null;
+        for(Node child : tree.children)
+            if(best == null || child.visits > best.visits)
+                best = child;
+        if(best != null)
+            return best.key;
+
+        MoveBuffer moves = new MoveBuffer();
+        root.generateMoves(root.getCurrentPlayerNumber(), moves);
+        return moves.get(0);
+    }
+
+    /**
+     * Stops the search threads
+     */
+    void shutdown(){
+        pool.shutdown();
+    }
+
+    // Runs playouts on its own copy of the model until it has run enough or the deadline passes.
+    private class Worker implements Callable<Void>{
+
+        private final ScotlandYardAIModel model;
+        private final long[] possible;
+        private final int possibleCount;
+        private final Node tree;
+        private final SplittableRandom random;
+        private final int playouts;
+        private final long deadline;
+
+        private final MoveBuffer moves = new MoveBuffer(), keys = new MoveBuffer();
+        private final List<Node> path = new ArrayList<>();
+        // Whether the last select added a node.
+        private boolean added;
+
+        Worker(ScotlandYardAIModel root, long[] possible, Node tree, SplittableRandom random, int playouts,
+               long deadline){
+            model = new ScotlandYardAIModel(root);
+            this.possible = possible;
+            possibleCount = possible == null ? 0 : NodeBits.count(possible);
+            this.tree = tree;
+            this.random = random;
+            this.playouts = playouts;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Void call(){
+            // The first playout always runs, so there is a move to return.
+            for(int i = 0; i < playouts && (i == 0 || deterministic || System.nanoTime() - deadline < 0); i++)
+                playout();
+            return null;
+        }
+
+        private void playout(){
+            if(possibleCount > 0)
+                model.state().place(GameState.MRX, guessMrX());
+
+            // Walks down the tree until a new node is added or the game ends.
+            path.clear();
+            path.add(tree);
+            Node node = tree;
+            int result;
+            while((result = generate()) < 0){
+                int mover = model.getCurrentPlayerNumber();
+                boolean hidden = possibleCount > 0 && mover == GameState.MRX;
+                findKeys(hidden);
+                Node child;
+                synchronized(node){
+                    child = select(node, mover, hidden);
+                }
+                model.applyMove(hidden ? moveWithKey(child.key) : child.key);
+                path.add(child);
+                node = child;
+                if(added)
+                    break;
+            }
+            if(result < 0)
+                result = rollout();
+
+            // Rewards are counted for the player who made the move into each node, detectives play as a team.
+            for(int i = 1; i < path.size(); i++){
+                Node child = path.get(i);
+                synchronized(path.get(i - 1)){
+                    child.reward += child.mover == GameState.MRX ? result : 1 - result;
+                }
+            }
+            while(model.state().depth() > 0)
+                model.revertMove();
+        }
+
+        // Picks a node mr.X could be at, at random.
+        private int guessMrX(){
+            int skip = random.nextInt(possibleCount);
+            int node = NodeBits.next(possible, 0);
+            while(skip-- > 0)
+                node = NodeBits.next(possible, node + 1);
+            return node;
+        }
+
+        // Fills keys with the keys of the generated moves, without repeats.
+        private void findKeys(boolean hidden){
+            keys.clear();
+            for(int i = 0; i < moves.size(); i++){
+                int key = hidden ? moves.get(i) & ~DESTINATIONS : moves.get(i);
+                if(!hidden || !keys.contains(key))
+                    keys.add(key);
+            }
+        }
+
+        // Chooses the child to walk to, adding a child for a key that has none yet before using UCB.
+        // Counts the visit to the child straight away, as a virtual loss until the playout is done.
+        private Node select(Node node, int mover, boolean hidden){
+            List<Node> children = node.children;
+            Node untried = null;
+            for(int i = 0; i < keys.size(); i++){
+                int key = keys.get(i);
+                // Moves of a player whose moves aren't hidden come in the same order every time.
+                Node child = !hidden && i < children.size() && children.get(i).key == key ? children.get(i)
+                        : find(children, key);
+                if(child == null){
+                    if(untried == null){
+                        untried = new Node(key, mover);
+                        children.add(untried);
+                    }
+                }
+                else child.availability++;
+            }
+            added = untried != null;
+            if(added){
+                untried.availability++;
+                untried.visits++;
+                return untried;
+            }
+
+            Node best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for(int i = 0; i < keys.size(); i++){
+                Node child = !hidden && i < children.size() && children.get(i).key == keys.get(i) ? children.get(i)
+                        : find(children, keys.get(i));
+                double score = child.reward / child.visits
+                        + EXPLORATION * Math.sqrt(Math.log(child.availability) / child.visits);
+                if(score > bestScore){
+                    bestScore = score;
+                    best = child;
+                }
+            }
+            best.visits++;
+            return best;
+        }
+
+        private Node find(List<Node> children, int key){
+            for(Node child : children)
+                if(child.key == key)
+                    return child;
+            return null;
+        }
+
+        // Picks one of the generated moves with the given tickets, at random.
+        private int moveWithKey(int key){
+            int count = 0;
+            for(int i = 0; i < moves.size(); i++)
+                if((moves.get(i) & ~DESTINATIONS) == key)
+                    count++;
+            int skip = random.nextInt(count);
+            for(int i = 0; i < moves.size(); i++)
+                if((moves.get(i) & ~DESTINATIONS) == key && skip-- == 0)
+                    return moves.get(i);
+            throw new IllegalStateException("No move with key " + key);
+        }
+
+        // Plays the game out from the model, returns 1 if mr.X wins and 0 if the detectives do.
+        private int rollout(){
+            int passes = 0;
+            int result;
+            while((result = generate()) < 0){
+                int mover = model.getCurrentPlayerNumber();
+                int move = playoutMove(mover);
+                // The game is over once no detective can move.
+                if(mover != GameState.MRX){
+                    passes = move == PackedMove.PASS ? passes + 1 : 0;
+                    if(passes == model.state().players() - 1)
+                        return 1;
+                }
+                model.applyMove(move);
+            }
+            return result;
+        }
+
+        // Generates the current player's moves, returns 1 if mr.X has won, 0 if the detectives have or -1.
+        private int generate(){
+            if(model.isMrXCaught())
+                return 0;
+            GameState state = model.state();
+            int mover = state.current();
+            if(mover == GameState.MRX && state.round() >= state.rounds())
+                return 1;
+            model.generateMoves(mover, moves);
+            if(mover == GameState.MRX && moves.get(0) == PackedMove.PASS)
+                return 0;
+            return -1;
+        }
+
+        // Mostly plays greedily: detectives close in on mr.X, and mr.X runs from the closest detective.
+        private int playoutMove(int mover){
+            if(moves.size() == 1 || random.nextDouble() >= GREEDY)
+                return moves.get(random.nextInt(moves.size()));
+
+            GameState state = model.state();
+            int mrX = state.location(GameState.MRX);
+            int best = moves.get(0);
+            int bestDistance = mover == GameState.MRX ? -1 : Integer.MAX_VALUE;
+            for(int i = 0; i < moves.size(); i++){
+                int destination = PackedMove.finalDestination(moves.get(i));
+                if(mover == GameState.MRX){
+                    int closest = Integer.MAX_VALUE;
+                    for(int p = 1; p < state.players(); p++)
+                        closest = Integer.min(closest, distance(state.location(p), destination, state.tickets(p)));
+                    if(closest > bestDistance){
+                        bestDistance = closest;
+                        best = moves.get(i);
+                    }
+                }
+                else{
+                    int distance = destination == mrX ? 0 : distance(destination, mrX, state.tickets(mover));
+                    if(distance < bestDistance){
+                        bestDistance = distance;
+                        best = moves.get(i);
+                    }
+                }
+            }
+            return best;
+        }
+
+        // The table holds 0 for nodes that can't be reached, they count as far away.
+        private int distance(int from, int to, long tickets){
+            int distance = cache.getDistance(from, to, tickets);
+            return distance == 0 ? Integer.MAX_VALUE - 1 : distance;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.gamekit.graph.AdjacencyBits;
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.NodeBits;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+// Class that tracks the nodes mr.X could be at, as the detectives see the game. It is fed the moves of the game as a
+// Spectator. After each hidden move of mr.X the set is moved one edge along the ticket he used and the nodes held by
+// detectives are removed; on reveal rounds it is reset to the revealed node.
+class MrXBelief implements Spectator{
+
+    private final CompiledGraph<Transport> graph;
+    private final AdjacencyBits adjacency;
+    // The edge data ordinal each ticket moves along, or -1 for any edge.
+    private final int[] ordinals = new int[Ticket.values().length];
+
+    private long[] possible, next;
+    private final long[] detectives;
+
+    /**
+     * Main constructor for MrXBelief
+     *
+     * @param view the game, at its start or at a reveal round
+     * @param graph the compiled form of the view's graph
+     */
+    MrXBelief(ScotlandYardView view, CompiledGraph<Transport> graph){
+        this.graph = graph;
+        adjacency = new AdjacencyBits(graph);
+        for(Ticket ticket : Ticket.values())
+            ordinals[ticket.ordinal()] = -1;
+        for(Transport transport : Transport.values())
+            if(Ticket.fromTransport(transport) != Ticket.SECRET)
+                ordinals[Ticket.fromTransport(transport).ordinal()] = transport.ordinal();
+
+        possible = NodeBits.create(graph.maxNode());
+        next = NodeBits.create(graph.maxNode());
+        detectives = NodeBits.create(graph.maxNode());
+
+        int location = view.getPlayerLocation(Colour.BLACK).orElse(0);
+        if(view.getCurrentRound() > 0 && graph.containsNode(location))
+            reset(location);
+        else resetToAll(view);
+    }
+
+    @Override
+    public void onMoveMade(ScotlandYardView view, Move move){
+        // Double moves are also reported as their two ticket moves, and passes don't move anyone.
+        if(!(move instanceof TicketMove))
+            return;
+        TicketMove ticketMove = (TicketMove) move;
+
+        if(ticketMove.colour().isDetective()){
+            // The game would be over if mr.X was there.
+            NodeBits.remove(possible, ticketMove.destination());
+            return;
+        }
+
+        // The round has already moved on when the move is reported.
+        int round = view.getCurrentRound();
+        if(round > 0 && view.getRounds().get(round - 1))
+            reset(ticketMove.destination());
+        else{
+            move(ticketMove.ticket());
+            findDetectives(view);
+            NodeBits.andNot(possible, detectives);
+            // The set only empties if mr.X was lost track of, then he could be anywhere.
+            if(NodeBits.isEmpty(possible))
+                resetToAll(view);
+        }
+    }
+
+    /**
+     * Mr.X is known to be at a node
+     *
+     * @param node the node
+     */
+    void reset(int node){
+        NodeBits.clear(possible);
+        NodeBits.add(possible, node);
+    }
+
+    /**
+     * Mr.X moved using a ticket
+     *
+     * @param ticket the ticket he used
+     */
+    void move(Ticket ticket){
+        int ordinal = ordinals[ticket.ordinal()];
+        if(ordinal < 0)
+            adjacency.stepAny(possible, next);
+        else adjacency.step(possible, ordinal, next);
+        long[] swap = possible;
+        possible = next;
+        next = swap;
+    }
+
+    // Mr.X could be at any node not held by a detective.
+    private void resetToAll(ScotlandYardView view){
+        NodeBits.clear(possible);
+        for(int i = 0; i < graph.size(); i++)
+            NodeBits.add(possible, graph.node(i));
+        findDetectives(view);
+        NodeBits.andNot(possible, detectives);
+    }
+
+    private void findDetectives(ScotlandYardView view){
+        NodeBits.clear(detectives);
+        for(Colour colour : view.getPlayers())
+            if(colour.isDetective())
+                view.getPlayerLocation(colour).filter(graph::containsNode)
+                        .ifPresent(location -> NodeBits.add(detectives, location));
+    }
+
+    /**
+     * @param node the node
+     * @return true if mr.X could be at the node
+     */
+    boolean isPossible(int node){
+        return NodeBits.contains(possible, node);
+    }
+
+    /**
+     * @return the number of nodes mr.X could be at
+     */
+    int count(){
+        return NodeBits.count(possible);
+    }
+
+    /**
+     * @return the nodes mr.X could be at, as NodeBits; live and not to be modified
+     */
+    long[] possible(){
+        return possible;
+    }
+}
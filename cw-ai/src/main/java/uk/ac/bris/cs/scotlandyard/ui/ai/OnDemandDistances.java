@@ -0,0 +1,350 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Class that finds distances on any map when they are asked for, instead of computing a table for the whole map
+// first, so a map that isn't the standard one is ready at once and only the distances the search asks for take
+// memory.
+// A distance is found by an A* search over (node, tickets left) states. Its lower bound comes from a few landmarks,
+// nodes spread over the map whose distances to and from every node are computed up front, ignoring tickets: by the
+// triangle inequality, the distance from a node to the end node is at least how much farther the end node is from a
+// landmark, or how much farther the node is from a landmark than the end node is. Every move uses a ticket, so a
+// state whose bound is more than its tickets left can't reach the end node and isn't searched. A state is skipped as
+// well if the search already reached its node, no later, with at least as many tickets of every type.
+// Every distance found is remembered, up to a bound, forgetting the least recently used ones first.
+final class OnDemandDistances implements DistanceOracle{
+
+    private static final int LANDMARKS = 8;
+    // The memo's keys pack the pair of nodes above the tickets.
+    private static final int MAX_NODES = 1 << 19;
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // Tickets left are packed as taxi, bus and underground in 8 bits each, from the high bits down, as counted by
+    // GameState.
+    private static final int TICKET_BITS = 8, TICKET_MASK = (1 << TICKET_BITS) - 1;
+    private static final int[] TICKET_SHIFT = {2 * TICKET_BITS, TICKET_BITS, 0};
+
+    // The memo is split in stripes, each locked on its own, so the search threads rarely wait for each other.
+    private static final int STRIPE_BITS = 4, STRIPES = 1 << STRIPE_BITS;
+
+    private final CompiledGraph<Transport> graph;
+    private final int nodes;
+    // The ticket type each edge uses, or -1 if it needs a ticket that the distances don't count.
+    private final int[] edgeTicket;
+    // The distances from and to every landmark, landmark * nodes + node, or -1 where there is no path.
+    private final int[] fromLandmark, toLandmark;
+    private final int landmarks;
+    private final Memo[] memo = new Memo[STRIPES];
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Chooses the landmarks of the map and computes their distances, which takes a search from and to each of them
+     *
+     * @param graph the map; not null
+     * @param memoSize the number of distances remembered
+     * @throws IllegalArgumentException if the map has too many nodes
+     */
+    OnDemandDistances(CompiledGraph<Transport> graph, int memoSize){
+        if(graph.maxNode() >= MAX_NODES)
+            throw new IllegalArgumentException("Map has more than " + (MAX_NODES - 1) + " nodes");
+        this.graph = graph;
+        nodes = graph.maxNode() + 1;
+        edgeTicket = new int[graph.edgeCount()];
+        for(int e = 0; e < edgeTicket.length; e++){
+            Ticket ticket = Ticket.fromTransport(graph.data(e));
+            edgeTicket[e] = ticket == Ticket.TAXI ? 0
+                    : ticket == Ticket.BUS ? 1
+                    : ticket == Ticket.UNDERGROUND ? 2
+                    : -1;
+        }
+        for(int i = 0; i < STRIPES; i++)
+            memo[i] = new Memo(Integer.max(1, memoSize / STRIPES));
+
+        // The edges the other way round, to search for the distances to a landmark.
+        int[] reverseFirst = new int[nodes + 1];
+        for(int e = 0; e < edgeTicket.length; e++)
+            if(edgeTicket[e] >= 0)
+                reverseFirst[graph.target(e) + 1]++;
+        for(int node = 0; node < nodes; node++)
+            reverseFirst[node + 1] += reverseFirst[node];
+        int[] reverseSource = new int[reverseFirst[nodes]];
+        int[] filled = Arrays.copyOf(reverseFirst, nodes);
+        for(int node = 0; node < nodes; node++)
+            for(int e = graph.firstEdge(node); e < graph.endEdge(node); e++)
+                if(edgeTicket[e] >= 0)
+                    reverseSource[filled[graph.target(e)]++] = node;
+
+        // Landmarks are chosen farthest first: the first is the node farthest from the first node of the map, every
+        // next one the node farthest from its nearest landmark so far. Nodes no landmark reaches come first, so
+        // every part of the map gets one.
+        landmarks = Integer.min(LANDMARKS, graph.size());
+        fromLandmark = new int[landmarks * nodes];
+        toLandmark = new int[landmarks * nodes];
+        int[] queue = new int[nodes];
+        int[] distances = new int[nodes];
+        int[] nearest = new int[nodes];
+        Arrays.fill(nearest, -1);
+        int landmark = 0;
+        if(landmarks > 0){
+            search(graph.node(0), distances, queue);
+            landmark = farthest(distances);
+        }
+        for(int k = 0; k < landmarks; k++){
+            search(landmark, distances, queue);
+            System.arraycopy(distances, 0, fromLandmark, k * nodes, nodes);
+            for(int node = 0; node < nodes; node++)
+                if(distances[node] >= 0 && (nearest[node] < 0 || distances[node] < nearest[node]))
+                    nearest[node] = distances[node];
+            searchReverse(landmark, reverseFirst, reverseSource, distances, queue);
+            System.arraycopy(distances, 0, toLandmark, k * nodes, nodes);
+            landmark = farthest(nearest);
+        }
+    }
+
+    // The node of the map at the longest distance, -1 being longer than any, ties going to the smaller node.
+    private int farthest(int[] distances){
+        int best = -1;
+        for(int node = 0; node < nodes; node++)
+            if(graph.containsNode(node)
+                    && (best < 0 || Integer.compareUnsigned(distances[node], distances[best]) > 0))
+                best = node;
+        return best;
+    }
+
+    // Breadth First Search from a node over the edges the distances count, ignoring tickets.
+    private void search(int start, int[] distances, int[] queue){
+        Arrays.fill(distances, -1);
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        distances[start] = 0;
+        while(head < tail){
+            int node = queue[head++];
+            for(int e = graph.firstEdge(node); e < graph.endEdge(node); e++){
+                int destination = graph.target(e);
+                if(edgeTicket[e] >= 0 && distances[destination] < 0){
+                    distances[destination] = distances[node] + 1;
+                    queue[tail++] = destination;
+                }
+            }
+        }
+    }
+
+    // Breadth First Search to a node, over the same edges the other way round.
+    private void searchReverse(int end, int[] first, int[] source, int[] distances, int[] queue){
+        Arrays.fill(distances, -1);
+        int head = 0, tail = 0;
+        queue[tail++] = end;
+        distances[end] = 0;
+        while(head < tail){
+            int node = queue[head++];
+            for(int i = first[node]; i < first[node + 1]; i++){
+                int origin = source[i];
+                if(distances[origin] < 0){
+                    distances[origin] = distances[node] + 1;
+                    queue[tail++] = origin;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ticket counts above 255 are clamped, as GameState can't hold more
+     *
+     * @param from start node
+     * @param to end node
+     * @param taxi the taxi tickets
+     * @param bus the bus tickets
+     * @param underground the underground tickets
+     * @return the shortest distance from the start node to the end node with the tickets, 0 if it can't be reached
+     * or is the start node
+     */
+    @Override
+    public int distance(int from, int to, int taxi, int bus, int underground){
+        if(from == to || !graph.containsNode(from) || !graph.containsNode(to))
+            return 0;
+        int tickets = Integer.min(taxi, TICKET_MASK) << TICKET_SHIFT[0]
+                | Integer.min(bus, TICKET_MASK) << TICKET_SHIFT[1]
+                | Integer.min(underground, TICKET_MASK);
+        long key = ((long) from * nodes + to) << 3 * TICKET_BITS | tickets;
+        Memo stripe = memo[(int) (key * 0x9E3779B97F4A7C15L >>> Long.SIZE - STRIPE_BITS)];
+        synchronized(stripe){
+            Integer distance = stripe.get(key);
+            if(distance != null)
+                return distance;
+        }
+        int distance = scratch.get().search(from, to, tickets);
+        synchronized(stripe){
+            stripe.put(key, distance);
+        }
+        return distance;
+    }
+
+    /**
+     * @return the number of distances remembered, at most the memo size rounded down to the stripes, and at least
+     * one per stripe
+     */
+    int remembered(){
+        int size = 0;
+        for(Memo stripe : memo)
+            synchronized(stripe){
+                size += stripe.size();
+            }
+        return size;
+    }
+
+    // A lower bound of the distance from a node to the end node, or UNREACHABLE if a landmark shows there is no path.
+    private int bound(int node, int to){
+        int bound = 0;
+        for(int i = 0; i < landmarks * nodes; i += nodes){
+            int fromNode = fromLandmark[i + node], fromEnd = fromLandmark[i + to];
+            if(fromNode >= 0){
+                // The landmark reaches the node but not the end node, so neither does the node.
+                if(fromEnd < 0)
+                    return UNREACHABLE;
+                bound = Integer.max(bound, fromEnd - fromNode);
+            }
+            int toNode = toLandmark[i + node], toEnd = toLandmark[i + to];
+            if(toEnd >= 0){
+                // The end node reaches the landmark but the node doesn't, so the node can't reach the end node.
+                if(toNode < 0)
+                    return UNREACHABLE;
+                bound = Integer.max(bound, toNode - toEnd);
+            }
+        }
+        return bound;
+    }
+
+    private static boolean covers(int tickets, int other){
+        return (tickets >>> TICKET_SHIFT[0]) >= (other >>> TICKET_SHIFT[0])
+                && (tickets >>> TICKET_SHIFT[1] & TICKET_MASK) >= (other >>> TICKET_SHIFT[1] & TICKET_MASK)
+                && (tickets & TICKET_MASK) >= (other & TICKET_MASK);
+    }
+
+    // The distances remembered in one stripe, the least recently used one is forgotten once it's full.
+    private static final class Memo extends LinkedHashMap<Long, Integer>{
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Memo(int capacity){
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest){
+            return size() > capacity;
+        }
+    }
+
+    // Scratch arrays of one thread's searches. States are pooled in arrays and kept in buckets by their lower bound
+    // of the whole distance, which every move raises by 0, 1 or 2, so the buckets are searched in order.
+    private class Scratch{
+
+        // The pooled states: their node, tickets left, moves so far and the next state in their bucket.
+        private int[] stateNode = new int[64], stateTickets = new int[64], stateMoves = new int[64];
+        private int[] stateNext = new int[64];
+        private int[] buckets = new int[64];
+        // Tickets left the nodes were searched from, in a list per node, and the bound of each node to the end node.
+        private int[] searchedTickets = new int[64], searchedNext = new int[64];
+        private final int[] searchedFirst = new int[nodes];
+        private final int[] bounds = new int[nodes];
+        // The search that last searched from a node, and that last bounded it.
+        private final int[] searchedStamp = new int[nodes], boundStamp = new int[nodes];
+        private int search = 0, target = 0, states = 0, searched = 0;
+
+        int search(int from, int to, int tickets){
+            search++;
+            target = to;
+            states = 0;
+            searched = 0;
+            int total = (tickets >>> TICKET_SHIFT[0]) + (tickets >>> TICKET_SHIFT[1] & TICKET_MASK)
+                    + (tickets & TICKET_MASK);
+            int first = bound(from);
+            if(first > total)
+                return 0;
+            if(buckets.length <= total)
+                buckets = new int[total + 1];
+            Arrays.fill(buckets, 0, total + 1, -1);
+            push(first, from, tickets, 0);
+
+            for(int f = first; f <= total; f++)
+                while(buckets[f] >= 0){
+                    int state = buckets[f];
+                    buckets[f] = stateNext[state];
+                    int node = stateNode[state], left = stateTickets[state], moves = stateMoves[state];
+                    if(covered(node, left))
+                        continue;
+                    if(node == to)
+                        return moves;
+                    addSearched(node, left);
+
+                    for(int e = graph.firstEdge(node); e < graph.endEdge(node); e++){
+                        int ticket = edgeTicket[e];
+                        if(ticket < 0 || (left >>> TICKET_SHIFT[ticket] & TICKET_MASK) == 0)
+                            continue;
+                        int destination = graph.target(e);
+                        int bound = bound(destination);
+                        // A state has as many tickets left as moves it may still make.
+                        int next = left - (1 << TICKET_SHIFT[ticket]);
+                        if(bound > total - moves - 1 || covered(destination, next))
+                            continue;
+                        push(moves + 1 + bound, destination, next, moves + 1);
+                    }
+                }
+            return 0;
+        }
+
+        // The bound of a node to the end node of this search, worked out once per search.
+        private int bound(int node){
+            if(boundStamp[node] != search){
+                boundStamp[node] = search;
+                bounds[node] = OnDemandDistances.this.bound(node, target);
+            }
+            return bounds[node];
+        }
+
+        private void push(int f, int node, int tickets, int moves){
+            if(states == stateNode.length){
+                stateNode = Arrays.copyOf(stateNode, 2 * states);
+                stateTickets = Arrays.copyOf(stateTickets, 2 * states);
+                stateMoves = Arrays.copyOf(stateMoves, 2 * states);
+                stateNext = Arrays.copyOf(stateNext, 2 * states);
+            }
+            stateNode[states] = node;
+            stateTickets[states] = tickets;
+            stateMoves[states] = moves;
+            stateNext[states] = buckets[f];
+            buckets[f] = states++;
+        }
+
+        // True if the node was searched from with at least these tickets left. It was reached no later, as the
+        // states of a node come out of the buckets in the order of their moves.
+        private boolean covered(int node, int tickets){
+            if(searchedStamp[node] != search)
+                return false;
+            for(int i = searchedFirst[node]; i >= 0; i = searchedNext[i])
+                if(covers(searchedTickets[i], tickets))
+                    return true;
+            return false;
+        }
+
+        private void addSearched(int node, int tickets){
+            if(searched == searchedTickets.length){
+                searchedTickets = Arrays.copyOf(searchedTickets, 2 * searched);
+                searchedNext = Arrays.copyOf(searchedNext, 2 * searched);
+            }
+            searchedTickets[searched] = tickets;
+            searchedNext[searched] = searchedStamp[node] == search ? searchedFirst[node] : -1;
+            searchedStamp[node] = search;
+            searchedFirst[node] = searched++;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Class that holds mr.X's moves for the first rounds of standard games, searched offline by OpeningBookBuilder much
+// deeper than the move timer allows. The book is loaded by memory mapping a book file: a header like the cache's,
+// then the keys of the positions in ascending order, so a position is found by binary search, then their moves.
+final class OpeningBook{
+
+    private static final int MAGIC = 0x53594f42, VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private final LongBuffer keys;
+    private final IntBuffer moves;
+    private final int depth;
+    // Scratch of probe, so a book must not be probed by two threads at once.
+    private final MoveBuffer buffer = new MoveBuffer();
+
+    private OpeningBook(LongBuffer keys, IntBuffer moves, int depth){
+        this.keys = keys;
+        this.moves = moves;
+        this.depth = depth;
+    }
+
+    /**
+     * Loads a book file by memory mapping it
+     *
+     * @param file the book file, see write
+     * @param fingerprint the fingerprint of the map the book must have been searched on
+     * @return the book
+     * @throws IOException if the file can't be read, was written by another version, for another map or is corrupt
+     */
+    static OpeningBook load(File file, long fingerprint) throws IOException{
+        if(!file.isFile())
+            throw new IOException(file + " does not exist");
+        MappedByteBuffer mapped;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            if(channel.size() < HEADER_SIZE)
+                throw new IOException(file + " is not a book file");
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if(mapped.getInt() != MAGIC)
+            throw new IOException(file + " is not a book file");
+        if(mapped.getInt() != VERSION)
+            throw new IOException(file + " was written by another version");
+        int size = mapped.getInt();
+        int depth = mapped.getInt();
+        if(mapped.getLong() != fingerprint)
+            throw new IOException(file + " was searched on another map");
+        long checksum = mapped.getLong();
+        if(size < 0 || mapped.capacity() != HEADER_SIZE + 12L * size)
+            throw new IOException(file + " has the wrong size");
+
+        mapped.position(HEADER_SIZE);
+        ByteBuffer entries = mapped.slice();
+        if(checksum(entries) != checksum)
+            throw new IOException(file + " is corrupt");
+
+        ByteBuffer keys = entries.duplicate().limit(8 * size);
+        ByteBuffer moves = entries.duplicate().position(8 * size);
+        return new OpeningBook(keys.slice().asLongBuffer(), moves.slice().asIntBuffer(), depth);
+    }
+
+    /**
+     * Loads the book of a map if there is one
+     *
+     * @param fingerprint the fingerprint of the map
+     * @return the book, or null if the map has no usable book file
+     */
+    static OpeningBook find(long fingerprint){
+        File file = file(fingerprint);
+        if(!file.isFile())
+            return null;
+        try{
+            return load(file, fingerprint);
+        }
+        catch(IOException e){
+            System.out.println("Ignoring " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param fingerprint the fingerprint of a map
+     * @return the file the book of the map is saved in
+     */
+    static File file(long fingerprint){
+        return new File(String.format("book-%016x.dat", fingerprint));
+    }
+
+    /**
+     * Writes a book file. The file is written next to its final name and then moved in place, so a reader never
+     * sees a partly written file
+     *
+     * @param file the book file
+     * @param fingerprint the fingerprint of the map the book was searched on
+     * @param depth the depth the moves were searched to
+     * @param keys the keys of the positions, see key, in ascending order without repeats
+     * @param moves the packed moves of the positions
+     * @throws IOException if the file can't be written
+     */
+    static void write(File file, long fingerprint, int depth, long[] keys, int[] moves) throws IOException{
+        if(keys.length != moves.length)
+            throw new IllegalArgumentException("Every key needs one move");
+        for(int i = 1; i < keys.length; i++)
+            if(keys[i - 1] >= keys[i])
+                throw new IllegalArgumentException("Keys are not ascending");
+
+        ByteBuffer entries = ByteBuffer.allocate(12 * keys.length);
+        entries.asLongBuffer().put(keys);
+        entries.position(8 * keys.length);
+        entries.asIntBuffer().put(moves);
+        entries.clear();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(keys.length).putInt(depth);
+        header.putLong(fingerprint).putLong(checksum(entries));
+        header.clear();
+
+        Path target = file.getAbsoluteFile().toPath();
+        Path temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+        try{
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)){
+                while(header.hasRemaining())
+                    channel.write(header);
+                while(entries.hasRemaining())
+                    channel.write(entries);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally{
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long checksum(ByteBuffer entries){
+        CRC32 crc = new CRC32();
+        crc.update(entries.duplicate());
+        return crc.getValue();
+    }
+
+    /**
+     * The key of a position in the book. Unlike the Zobrist hash it does not depend on the order of the detectives,
+     * as a game gives the detectives their start locations in a random order. The book's moves are searched with
+     * the detectives in ascending order of their start locations, and a search with them in another order, in which
+     * they make their expected moves, may choose another move
+     *
+     * @param state the state
+     * @return the key
+     */
+    static long key(GameState state){
+        long key = mix(((((long) state.players() << 8 | state.rounds()) << 8 | state.round()) << 16
+                | state.location(GameState.MRX)) ^ mix(state.tickets(GameState.MRX)));
+        // A sum doesn't depend on the order of its terms.
+        for(int p = 1; p < state.players(); p++)
+            key += mix(mix(state.tickets(p)) ^ state.location(p));
+        return key;
+    }
+
+    // The finalizer of SplitMix64, which spreads every bit of its input over the result.
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Looks mr.X's move up in the book. A move is only returned if it is valid, so a key that collides with that of
+     * another position can't make an illegal move
+     *
+     * @param model the game model, with mr.X to move
+     * @return the packed move, or PackedMove.NONE if the position isn't in the book
+     */
+    int probe(ScotlandYardAIModel model){
+        long key = key(model.state());
+        int low = 0, high = keys.limit() - 1;
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            long k = keys.get(middle);
+            if(k < key)
+                low = middle + 1;
+            else if(k > key)
+                high = middle - 1;
+            else{
+                int move = moves.get(middle);
+                model.generateMoves(GameState.MRX, buffer);
+                return buffer.contains(move) ? move : PackedMove.NONE;
+            }
+        }
+        return PackedMove.NONE;
+    }
+
+    /**
+     * @return the number of positions in the book
+     */
+    int size(){
+        return keys.limit();
+    }
+
+    /**
+     * @return the depth the moves of the book were searched to, in mr.X moves after the first
+     */
+    int depth(){
+        return depth;
+    }
+}
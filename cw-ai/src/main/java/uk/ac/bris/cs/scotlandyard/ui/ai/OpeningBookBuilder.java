@@ -0,0 +1,206 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Class that builds the opening book offline. Every start of a standard game, mr.X at one of the MRX_LOCATIONS and
+// the detectives at any set of the DETECTIVE_LOCATIONS, is searched to a fixed depth. So are mr.X's next turns on
+// the line the search expects, where the detectives make the moves the search expects of them. The starts are
+// shared between threads, each searching with its own single threaded, deterministic RootSearch whose table is
+// cleared for every start, so the book does not depend on the number of threads. Run from cw-ai as
+//
+//   mvn compile exec:java -Dexec.mainClass=uk.ac.bris.cs.scotlandyard.ui.ai.OpeningBookBuilder
+//       -Dexec.args="--depth 4 --rounds 3 --threads 8"
+//
+// which writes the book file to the working directory, where the AI looks for it. --starts n only searches the
+// first n starts, to try a depth out.
+public final class OpeningBookBuilder{
+
+    private static final Colour[] DETECTIVES = {Colour.BLUE, Colour.GREEN, Colour.RED, Colour.WHITE, Colour.YELLOW};
+
+    private OpeningBookBuilder(){
+
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException{
+        Map<String, String> options = new HashMap<>();
+        for(int i = 0; i < args.length; i++){
+            if(!args[i].startsWith("--"))
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+            boolean flag = i + 1 == args.length || args[i + 1].startsWith("--");
+            options.put(args[i].substring(2), flag ? "" : args[++i]);
+        }
+        int depth = Integer.parseInt(options.getOrDefault("depth", "4"));
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "3"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(SearchConfig.threads())));
+        int detectives = Integer.parseInt(options.getOrDefault("detectives", String.valueOf(DETECTIVES.length)));
+        if(detectives < 1 || detectives > DETECTIVES.length)
+            throw new IllegalArgumentException("There must be 1 to " + DETECTIVES.length + " detectives");
+
+        ImmutableGraph<Integer, Transport> graph = StandardGame.standardGraph();
+        CompiledGraph<Transport> compiled = CompiledGraph.compile(graph, Transport.class);
+        List<int[]> starts = starts(detectives);
+        if(options.containsKey("starts"))
+            starts = starts.subList(0, Integer.min(starts.size(), Integer.parseInt(options.get("starts"))));
+        File file = options.containsKey("out") ? new File(options.get("out"))
+                : OpeningBook.file(compiled.fingerprint());
+
+        long start = System.nanoTime();
+        long[][] keys = new long[starts.size()][];
+        int[][] moves = new int[starts.size()][];
+        Cache cache = SharedCache.acquire(model(graph, compiled, starts.get(0)));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try{
+            List<int[]> searched = starts;
+            AtomicInteger next = new AtomicInteger(), done = new AtomicInteger();
+            List<Callable<Void>> workers = new ArrayList<>();
+            for(int t = 0; t < threads; t++)
+                workers.add(() -> {
+                    RootSearch root = new RootSearch(cache, null, depth, 1, true, SearchConfig.tableBits());
+                    Search expected = new Search(cache, null, null, 0);
+                    try{
+                        for(int i = next.getAndIncrement(); i < searched.size(); i = next.getAndIncrement()){
+                            keys[i] = new long[rounds];
+                            moves[i] = new int[rounds];
+                            int found = searchLine(model(graph, compiled, searched.get(i)), root, expected,
+                                    keys[i], moves[i]);
+                            keys[i] = Arrays.copyOf(keys[i], found);
+                            moves[i] = Arrays.copyOf(moves[i], found);
+                            if(done.incrementAndGet() % 100 == 0)
+                                System.out.printf("%d/%d starts, %.0f s%n", done.get(), searched.size(),
+                                        (System.nanoTime() - start) / 1e9);
+                        }
+                        return null;
+                    }
+                    finally{
+                        root.shutdown();
+                    }
+                });
+            for(Future<Void> result : executor.invokeAll(workers))
+                result.get();
+        }
+        finally{
+            executor.shutdown();
+            SharedCache.release(cache);
+        }
+
+        // Keys in ascending order, as the book needs them. A position reached from two starts keeps the move of
+        // the first.
+        TreeMap<Long, Integer> book = new TreeMap<>();
+        for(int i = 0; i < keys.length; i++)
+            for(int j = 0; j < keys[i].length; j++)
+                book.putIfAbsent(keys[i][j], moves[i][j]);
+        long[] bookKeys = new long[book.size()];
+        int[] bookMoves = new int[book.size()];
+        int i = 0;
+        for(Map.Entry<Long, Integer> entry : book.entrySet()){
+            bookKeys[i] = entry.getKey();
+            bookMoves[i++] = entry.getValue();
+        }
+        OpeningBook.write(file, compiled.fingerprint(), depth, bookKeys, bookMoves);
+        System.out.printf("%d positions from %d starts searched to depth %d in %.0f s, written to %s%n",
+                bookKeys.length, starts.size(), depth, (System.nanoTime() - start) / 1e9, file);
+    }
+
+    /**
+     * Lists the starts of standard games, mr.X's location first, then the detectives' locations in ascending
+     * order. The order of the detectives doesn't matter to the book, see OpeningBook.key
+     *
+     * @param detectives the number of detectives
+     * @return the starts
+     */
+    static List<int[]> starts(int detectives){
+        List<int[]> starts = new ArrayList<>();
+        List<Integer> locations = new ArrayList<>(StandardGame.DETECTIVE_LOCATIONS);
+        locations.sort(null);
+        int[] chosen = new int[detectives];
+        for(int i = 0; i < detectives; i++)
+            chosen[i] = i;
+        while(true){
+            for(int mrX : StandardGame.MRX_LOCATIONS){
+                int[] start = new int[detectives + 1];
+                start[0] = mrX;
+                for(int i = 0; i < detectives; i++)
+                    start[i + 1] = locations.get(chosen[i]);
+                starts.add(start);
+            }
+
+            // Moves on to the next set of indices in lexicographic order.
+            int i = detectives - 1;
+            while(i >= 0 && chosen[i] == locations.size() - detectives + i)
+                i--;
+            if(i < 0)
+                return starts;
+            chosen[i]++;
+            for(int j = i + 1; j < detectives; j++)
+                chosen[j] = chosen[j - 1] + 1;
+        }
+    }
+
+    // The model of a standard game at a start, before mr.X's first move.
+    private static ScotlandYardAIModel model(ImmutableGraph<Integer, Transport> graph,
+                                             CompiledGraph<Transport> compiled, int[] start){
+        // The game is never played, so its players are never asked to move.
+        Player none = (view, location, moves, callback) -> {
+            throw new IllegalStateException("The game is not played");
+        };
+        PlayerConfiguration mrX = new PlayerConfiguration.Builder(Colour.BLACK).using(none)
+                .with(StandardGame.generateMrXTickets()).at(start[0]).build();
+        PlayerConfiguration[] detectives = new PlayerConfiguration[start.length - 1];
+        for(int i = 0; i < detectives.length; i++)
+            detectives[i] = new PlayerConfiguration.Builder(DETECTIVES[i]).using(none)
+                    .with(StandardGame.generateDetectiveTickets()).at(start[i + 1]).build();
+        ScotlandYardModel game = new ScotlandYardModel(StandardGame.ROUNDS, graph, mrX, detectives[0],
+                Arrays.copyOfRange(detectives, 1, detectives.length));
+        return new ScotlandYardAIModel(game, compiled, start[0]);
+    }
+
+    /**
+     * Searches mr.X's move at a start, then at his next turns after the detectives made the moves the search
+     * expects, until the line ends or the arrays are full
+     *
+     * @param model the game at its start, with mr.X to move; modified
+     * @param root the deterministic search of mr.X's moves
+     * @param expected the search that chooses the detectives' moves
+     * @param keys the array the keys of the positions are put in
+     * @param moves the array mr.X's moves are put in
+     * @return the number of positions searched
+     */
+    private static int searchLine(ScotlandYardAIModel model, RootSearch root, Search expected, long[] keys,
+                                  int[] moves){
+        // Entries left by other starts would make the moves depend on which starts the thread searched before.
+        root.table().clear();
+        int found = 0;
+        while(found < keys.length && model.state().round() < model.state().rounds()){
+            // A deterministic search doesn't look at its deadline.
+            int move = root.search(model, Long.MAX_VALUE);
+            if(move == PackedMove.NONE)
+                break;
+            keys[found] = OpeningBook.key(model.state());
+            moves[found++] = move;
+
+            model.applyMove(move);
+            while(model.getCurrentPlayerNumber() != GameState.MRX && !model.isMrXCaught())
+                model.applyMove(expected.detectiveMove(model));
+            if(model.isMrXCaught())
+                break;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,295 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Class that searches mr.X's root moves by iterative deepening, splitting every iteration across the threads of a
+// ForkJoinPool. Every thread searches with its own Search and its own copy of the model, kept for all the root moves
+// and iterations of a search, so its killer moves and history build up over them. The best score found so far is
+// shared as the alpha bound of later root moves. All threads share one transposition table, kept between moves.
+class RootSearch{
+
+    static final double LOWEST = -100000.0, HIGHEST = 100000.0;
+
+    private final Cache cache;
+    private final Tablebase tablebase;
+    private final int maxDepth;
+    private final boolean deterministic;
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private final SearchStats stats;
+    // The deadline of ponder, moved to the past by stopPondering.
+    private final AtomicLong ponderDeadline = new AtomicLong();
+    // The table entry of the root, probed by iterate on the thread that calls search or ponder.
+    private final TranspositionTable.Entry rootEntry = new TranspositionTable.Entry();
+    // The scratch of each thread of the pool, and the number of the search running, counted by iterate, so the
+    // threads know when to start over.
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+    private int searches = 0;
+
+    /**
+     * Main constructor for RootSearch
+     *
+     * @param cache the distance cache used for scoring; not null
+     * @param tablebase the endgame tablebase probed at the leaves; null if there is none
+     * @param maxDepth the deepest iteration, in mr.X moves after the first
+     * @param threads the number of threads to search with
+     * @param deterministic if true, root moves don't share bounds and the clock is ignored, so the result does not
+     * depend on timing
+     * @param tableBits the transposition table holds 2^tableBits entries
+     */
+    RootSearch(Cache cache, Tablebase tablebase, int maxDepth, int threads, boolean deterministic, int tableBits){
+        this.cache = cache;
+        this.tablebase = tablebase;
+        this.maxDepth = maxDepth;
+        this.deterministic = deterministic;
+        pool = new ForkJoinPool(threads);
+        table = new TranspositionTable(tableBits);
+        stats = new SearchStats(table);
+    }
+
+    // The transposition table, for its hit and miss counters.
+    TranspositionTable table(){
+        return table;
+    }
+
+    // The statistics of the move being searched, or of the last one.
+    SearchStats stats(){
+        return stats;
+    }
+
+    /**
+     * Finds the best move for mr.X in the model, searching depth 1, 2, 3... until the deadline. The first iteration
+     * always completes, later ones are abandoned when the deadline passes.
+     *
+     * @param root current game model, with mr.X to move; not modified
+     * @param deadline the System.nanoTime() by which the search must end
+     * @return the best packed move of the deepest completed iteration
+     */
+    int search(ScotlandYardAIModel root, long deadline){
+        return iterate(root, new AtomicLong(deadline), false);
+    }
+
+    /**
+     * Searches a position mr.X may move from next until stopPondering is called, by iterative deepening as search
+     * does, but without choosing a move. What it finds is left in the table, which search keeps using, so a later
+     * search of the same position or one near it starts from the deepest results pondering reached. Every iteration
+     * stops at stopPondering, even for a deterministic search. Must not run at the same time as search
+     *
+     * @param root the game model, with mr.X to move; not modified
+     */
+    void ponder(ScotlandYardAIModel root){
+        iterate(root, ponderDeadline, true);
+    }
+
+    /**
+     * Lets the next ponder run until stopPondering is called. Called before ponder is handed to another thread, so
+     * a stop that comes before that thread starts pondering isn't lost
+     */
+    void allowPondering(){
+        ponderDeadline.set(System.nanoTime() + Long.MAX_VALUE / 2);
+    }
+
+    /**
+     * Makes ponder return within a few nodes of the search, discarding its iteration
+     */
+    void stopPondering(){
+        ponderDeadline.set(System.nanoTime() - 1);
+    }
+
+    /**
+     * Searches by iterative deepening, see search
+     *
+     * @param root the game model, with mr.X to move; not modified
+     * @param deadline the System.nanoTime() at which the search is abandoned
+     * @param pondering true if the first iteration is abandoned at the deadline too, and the search isn't counted
+     * in the statistics
+     * @return the best packed move of the deepest completed iteration
+     */
+    private int iterate(ScotlandYardAIModel root, AtomicLong deadline, boolean pondering){
+        SearchStats counted = pondering ? null : stats;
+        if(counted != null)
+            counted.startMove();
+        table.newSearch();
+        searches++;
+        MoveBuffer buffer = new MoveBuffer();
+        root.generateMoves(GameState.MRX, buffer);
+        int[] moves = new int[buffer.size()];
+        for(int i = 0; i < moves.length; i++)
+            moves[i] = buffer.get(i);
+
+        // Searching past the last round adds nothing. A depth d iteration looks at d + 1 mr.X moves.
+        int roundsLeft = root.state().rounds() - root.state().round();
+        int lastDepth = Integer.max(1, Integer.min(maxDepth, roundsLeft - 1));
+
+        // A root searched before, as the position the detectives' replies to the last move led to or as a pondered
+        // one, has its best move and depth in the table. The search is re-rooted there: that move comes first, and
+        // the iterations up to its depth are skipped, as their scores are in the table too. Then the first iteration
+        // is timed as well, and if it runs out of time the table's move is played. Only an exact entry has a best
+        // move, one that failed low only has the best of its upper bounds. A move that isn't one of the root's is
+        // another position's, whose key collided. Otherwise the table's move is only tried first.
+        int firstDepth = 1;
+        if(table.probe(root.state().hash(), rootEntry)){
+            int hashMove = indexOf(moves, rootEntry.move);
+            moveToFront(moves, hashMove);
+            if(hashMove >= 0 && rootEntry.bound == TranspositionTable.EXACT)
+                firstDepth = Integer.max(1, Integer.min(lastDepth, rootEntry.depth));
+        }
+
+        for(int depth = firstDepth; depth <= lastDepth; depth++){
+            boolean timed = pondering || (depth > 1 && !deterministic);
+            double[] scores = new double[moves.length];
+            AtomicBoolean timedOut = new AtomicBoolean(false);
+            pool.invoke(new RootTask(root, moves, scores, new AtomicLong(Double.doubleToLongBits(LOWEST)),
+                    depth, timed, deadline, timedOut, counted, 0, moves.length));
+            if(timedOut.get())
+                break;
+
+            // Ties go to the first move, as in a sequential search.
+            int best = 0;
+            for(int i = 1; i < moves.length; i++)
+                if(scores[i] > scores[best])
+                    best = i;
+
+            // The best move is searched first in the next iteration, and by a later search of the same root.
+            table.store(root.state().hash(), depth, TranspositionTable.EXACT, scores[best], moves[best]);
+            moveToFront(moves, best);
+            if(counted != null)
+                counted.completed(depth);
+
+            if(timed && System.nanoTime() - deadline.get() > 0)
+                break;
+        }
+        if(counted != null)
+            counted.endMove();
+        return moves.length == 0 ? PackedMove.NONE : moves[0];
+    }
+
+    // Moves the move at index i to the front, keeping the order of the others. Does nothing if i is -1.
+    private static void moveToFront(int[] moves, int i){
+        if(i < 0)
+            return;
+        int move = moves[i];
+        System.arraycopy(moves, 0, moves, 1, i);
+        moves[0] = move;
+    }
+
+    private static int indexOf(int[] moves, int move){
+        for(int i = 0; i < moves.length; i++)
+            if(moves[i] == move)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Stops the search threads
+     */
+    void shutdown(){
+        pool.shutdown();
+    }
+
+    // Raises the shared bound to at least value.
+    private static void raise(AtomicLong bound, double value){
+        long current = bound.get();
+        while(value > Double.longBitsToDouble(current) && !bound.compareAndSet(current, Double.doubleToLongBits(value)))
+            current = bound.get();
+    }
+
+    // The scratch of one thread: its search, and its copy of the root of the search numbered number, which every root
+    // move is applied to and reverted from. The copy is null after a search that didn't return, as that leaves it in an
+    // unknown state.
+    private final class Worker{
+        private final Search search = new Search(cache, table, tablebase, 0);
+        private ScotlandYardAIModel model = null;
+        private int number = -1;
+    }
+
+    // Searches the root moves in [from, to), splitting the range in halves until a single move is left.
+    private class RootTask extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+
+        private final ScotlandYardAIModel root;
+        private final int[] moves;
+        private final double[] scores;
+        private final AtomicLong alpha;
+        private final int depth;
+        private final boolean timed;
+        private final AtomicLong deadline;
+        private final AtomicBoolean timedOut;
+        // The statistics the searches are counted in, or null.
+        private final SearchStats stats;
+        private final int from, to;
+
+        RootTask(ScotlandYardAIModel root, int[] moves, double[] scores, AtomicLong alpha, int depth,
+                 boolean timed, AtomicLong deadline, AtomicBoolean timedOut, SearchStats stats, int from, int to){
+            this.root = root;
+            this.moves = moves;
+            this.scores = scores;
+            this.alpha = alpha;
+            this.depth = depth;
+            this.timed = timed;
+            this.deadline = deadline;
+            this.timedOut = timedOut;
+            this.stats = stats;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > 1){
+                int middle = (from + to) >>> 1;
+                invokeAll(new RootTask(root, moves, scores, alpha, depth, timed, deadline, timedOut, stats, from,
+                                middle),
+                        new RootTask(root, moves, scores, alpha, depth, timed, deadline, timedOut, stats, middle,
+                                to));
+                return;
+            }
+
+            // Once one root move ran out of time the iteration is discarded, so the rest are skipped. So are those
+            // that start after the deadline, as when pondering is stopped before it starts.
+            if(timedOut.get())
+                return;
+            if(timed && System.nanoTime() - deadline.get() > 0){
+                timedOut.set(true);
+                return;
+            }
+
+            // The killer moves and history are kept until the thread works on another search.
+            Worker worker = workers.get();
+            if(worker.number != searches){
+                worker.number = searches;
+                worker.search.clearHistory();
+                worker.model = null;
+            }
+            ScotlandYardAIModel model = worker.model == null ? new ScotlandYardAIModel(root) : worker.model;
+            worker.model = null;
+            Search search = worker.search;
+            search.restart(depth, timed ? deadline : null);
+            double bound = deterministic ? LOWEST : Double.longBitsToDouble(alpha.get());
+
+            model.applyMove(moves[from]);
+            try{
+                scores[from] = search.minMax(model, 0, false, bound, HIGHEST);
+                model.revertMove();
+                worker.model = model;
+            }
+            catch(Search.Timeout e){
+                timedOut.set(true);
+                return;
+            }
+            finally{
+                if(stats != null)
+                    search.addTo(stats);
+            }
+            if(!deterministic)
+                raise(alpha, scores[from]);
+        }
+    }
+}
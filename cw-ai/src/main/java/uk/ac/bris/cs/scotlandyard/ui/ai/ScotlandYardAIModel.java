@@ -1,21 +1,25 @@
 package uk.ac.bris.cs.scotlandyard.ui.ai;
 
-import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
 import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.NodeBits;
+import uk.ac.bris.cs.gamekit.graph.ReachBits;
 import uk.ac.bris.cs.scotlandyard.model.*;
 
-import java.util.*;
-
 // Models a game.
-class ScotlandYardAIModel implements MoveVisitor{
+class ScotlandYardAIModel{
 
-    private int round;
-    private int currentPlayerNumber = 0;
-    private List<ScotlandYardAIPlayer> players = new ArrayList<>();
+    private GameState state;
 
     // Immutable.
     private Graph<Integer, Transport> graph;
-    private List<Boolean> rounds;
+    private CompiledGraph<Transport> compiledGraph;
+    private ReachBits reach;
+    private long[] noneBlocked;
+
+    // Move generation scratch, not shared between copies. The generator may be shared by models of one game.
+    private MoveGenerator generator;
+    private int[] ticketCounts = new int[Ticket.values().length];
 
     /**
      * Constructs a copy of the model from a previous one
@@ -23,213 +27,168 @@ class ScotlandYardAIModel implements MoveVisitor{
      * @param model previous model
      */
     ScotlandYardAIModel(ScotlandYardAIModel model){
-        round = model.getCurrentRound();
-        currentPlayerNumber = model.getCurrentPlayerNumber();
-
-        for(ScotlandYardAIPlayer p : model.getPlayers())
-            players.add(new ScotlandYardAIPlayer(p));
-
+        state = new GameState(model.state);
         graph = model.graph;
-        rounds = model.getRounds();
+        compiledGraph = model.compiledGraph;
+        reach = model.reach;
+        noneBlocked = model.noneBlocked;
+        generator = new MoveGenerator(compiledGraph);
     }
 
     /**
-     * Constructs a model from a ScotlandYardView and possibly a new location for mr.X
+     * Constructs a model from a ScotlandYardView and possibly a new location for mr.X, building its own reach sets,
+     * move generator and hash keys. Fine for a model made once, the models of a game share them instead, see below
      *
      * @param view the view the model is constructed from
+     * @param compiledGraph the compiled form of the view's graph, used for move generation
      * @param location if mr.X should be moved to a new location, this should be != -1
      */
-    ScotlandYardAIModel(ScotlandYardView view, int location){
-        graph = view.getGraph();
-        rounds = view.getRounds();
-        round = view.getCurrentRound();
-
-        for(Colour c : view.getPlayers()){
-            if(c == view.getCurrentPlayer())
-                break;
-            currentPlayerNumber++;
-        }
-
-        for(Colour c : view.getPlayers()){
-            HashMap<Ticket, Integer> ticketMap = new HashMap<>();
-
-            ticketMap.put(Ticket.SECRET, view.getPlayerTickets(c, Ticket.SECRET).orElse(0));
-            ticketMap.put(Ticket.DOUBLE, view.getPlayerTickets(c, Ticket.DOUBLE).orElse(0));
-            ticketMap.put(Ticket.TAXI, view.getPlayerTickets(c, Ticket.TAXI).orElse(0));
-            ticketMap.put(Ticket.BUS, view.getPlayerTickets(c, Ticket.BUS).orElse(0));
-            ticketMap.put(Ticket.UNDERGROUND, view.getPlayerTickets(c, Ticket.UNDERGROUND).orElse(0));
-
-            if(c != Colour.BLACK || location == -1)
-                players.add(new ScotlandYardAIPlayer(c, view.getPlayerLocation(c).orElse(0), ticketMap));
-            else players.add(new ScotlandYardAIPlayer(c, location, ticketMap));
-        }
+    ScotlandYardAIModel(ScotlandYardView view, CompiledGraph<Transport> compiledGraph, int location){
+        this(view, compiledGraph, new ReachBits(compiledGraph), new MoveGenerator(compiledGraph),
+                new Zobrist(view.getPlayers().size(), compiledGraph.maxNode()), location);
     }
 
     /**
-     * Increments current round by 1
+     * Constructs a model from a ScotlandYardView and possibly a new location for mr.X, with the reach sets, move
+     * generator and hash keys built once for its game. The generator keeps scratch, so the models sharing it must
+     * not generate moves on two threads at once; their copies have generators of their own
+     *
+     * @param view the view the model is constructed from
+     * @param compiledGraph the compiled form of the view's graph, used for move generation
+     * @param reach the reach sets of the compiled graph; not null
+     * @param generator a move generator of the compiled graph; not null
+     * @param zobrist the hash keys, for the view's players and map; not null
+     * @param location if mr.X should be moved to a new location, this should be != -1
      */
-    private void incrementRound(){
-        round += 1;
+    ScotlandYardAIModel(ScotlandYardView view, CompiledGraph<Transport> compiledGraph, ReachBits reach,
+                        MoveGenerator generator, Zobrist zobrist, int location){
+        graph = view.getGraph();
+        this.compiledGraph = compiledGraph;
+        this.reach = reach;
+        noneBlocked = NodeBits.create(compiledGraph.maxNode());
+        this.generator = generator;
+        state = GameState.fromView(view, compiledGraph.maxNode(), zobrist, location);
     }
 
     /**
-     * Increments current player
+     * Generates all valid moves for a player as packed moves, see PackedMove
+     *
+     * @param player the index of the player to generate moves for
+     * @param moves the buffer to fill; not null
+     * @return number of moves generated
      */
-    private void incrementCurrentPlayer(){
-        currentPlayerNumber = (currentPlayerNumber + 1) % players.size();
+    int generateMoves(int player, MoveBuffer moves){
+        GameState.unpack(state.tickets(player), ticketCounts);
+        return generator.generate(state.location(player), ticketCounts, state.occupied(), doublesAllowed(), moves);
     }
 
-
     /**
-     * Iterates all players and checks if location l is free.
+     * Generates the single moves of a player, see MoveGenerator.generateSingles. No pass is added if there are none
      *
-     * @param c the colour of the player to be excluded from the check
-     * @param l the number of the node to check
-     * @return true or false, depending if location is free
+     * @param player the index of the player to generate moves for
+     * @param moves the buffer to fill; not null
+     * @return number of moves generated
      */
-    private boolean isLocationFree(Colour c, Integer l){
-        for(ScotlandYardAIPlayer p : players)
-            if(p.location() == l && p.colour() != c && p.colour() != Colour.BLACK)
-                return false;
-        return true;
+    int generateSingles(int player, MoveBuffer moves){
+        GameState.unpack(state.tickets(player), ticketCounts);
+        return generator.generateSingles(state.location(player), ticketCounts, state.occupied(), moves);
     }
 
     /**
-     * Generates a HashSet of TicketMoves with all possible 'simple' moves for a player
+     * Generates the double moves of a player that start with its single moves, replacing the contents of the buffer
      *
-     * @param p the player to generate moves for; not null
-     * @return a HashSet of all available simple moves for player
-     * @throws NullPointerException if p is null
+     * @param player the index of the player to generate moves for
+     * @param singles the player's single moves, from generateSingles
+     * @param moves the buffer to fill; not null, not singles
+     * @return number of moves generated, 0 if the player can't make double moves
      */
-    private HashSet<TicketMove> getMovesFromPlayerLocation(ScotlandYardAIPlayer p){
-        if(p == null)
-            throw new NullPointerException("Player is null");
-
-        HashSet<TicketMove> moves = new HashSet<>();
-        // Iterates through all available edges from current player position.
-        for(Edge<Integer, Transport> e : graph.getEdgesFrom(graph.getNode(p.location()))){
-            if(isLocationFree(p.colour(), e.destination().value())){
-                // Checks for normal ticket moves.
-                if(p.tickets().get(Ticket.fromTransport(e.data())) > 0)
-                    moves.add(new TicketMove(p.colour(), Ticket.fromTransport(e.data()), e.destination().value()));
-                // Checks for secret ticket move.
-                if(p.tickets().get(Ticket.SECRET) > 0)
-                    moves.add(new TicketMove(p.colour(), Ticket.SECRET, e.destination().value()));
-            }
-        }
-        return moves;
+    int generateDoubles(int player, MoveBuffer singles, MoveBuffer moves){
+        moves.clear();
+        if(!doublesAllowed())
+            return 0;
+        GameState.unpack(state.tickets(player), ticketCounts);
+        return generator.appendDoubles(ticketCounts, state.occupied(), singles, moves);
     }
 
     /**
-     * Generates a HashSet of Moves with all possible double moves for a player
+     * Generates all moves from a location, ignoring all other players and the number of rounds left
      *
-     * @param simpleMoves = the collection of initial moves that are available to the player; not null
-     * @param p           the player to generate moves for; not null
-     * @return a HashSet of all available double moves for player
-     * @throws NullPointerException if p or simpleMoves is null
+     * @param location the location to move from
+     * @param tickets the packed tickets, see GameState.pack
+     * @param moves the buffer to fill; not null
+     * @return number of moves generated
      */
-    private HashSet<Move> getDoubleMovesFromPlayerLocation(Set<TicketMove> simpleMoves, ScotlandYardAIPlayer p){
-        if(simpleMoves == null)
-            throw new NullPointerException("SimpleMoves is null");
-        if(p == null)
-            throw new NullPointerException("Player is null");
-
-        HashSet<Move> moves = new HashSet<>();
-        // Iterates through all available simple moves in order to generate double moves.
-        for(TicketMove m : simpleMoves){
-            // Iterates through all available edges from simple move position.
-            for(Edge<Integer, Transport> e : graph.getEdgesFrom(graph.getNode(m.destination()))){
-                if(isLocationFree(p.colour(), e.destination().value())){
-                    int c = 0;
-                    // If using the same ticket, player must have at least 2.
-                    if(Ticket.fromTransport(e.data()) == m.ticket())
-                        c = 1;
-                    // Checks for normal double moves.
-                    if(p.tickets().get(Ticket.fromTransport(e.data())) > c)
-                        moves.add(new DoubleMove(p.colour(), m, new TicketMove(p.colour(), Ticket.fromTransport(e.data()), e.destination().value())));
-                    // Checks for double moves containing secret tickets.
-                    if(p.tickets().get(Ticket.SECRET) > 0)
-                        moves.add(new DoubleMove(p.colour(), m, new TicketMove(p.colour(), Ticket.SECRET, e.destination().value())));
-                }
-            }
-        }
-        return moves;
+    int generateMovesFrom(int location, long tickets, MoveBuffer moves){
+        GameState.unpack(tickets, ticketCounts);
+        return generator.generate(location, ticketCounts, noneBlocked, true, moves);
+    }
+
+    // A double move needs two rounds left.
+    private boolean doublesAllowed(){
+        return state.round() + 1 < state.rounds();
     }
 
     /**
-     * Generates a HashSet of Moves with all possible moves for a player
+     * Applies a packed move of the current player in place. Every applied move must be reverted with revertMove,
+     * most recent first
      *
-     * @param p the player to generate moves for; not null
-     * @return a HashSet of all available moves for player
-     * @throws NullPointerException if p is null
+     * @param move the packed move
      */
-    HashSet<Move> getValidMovesForPlayer(ScotlandYardAIPlayer p){
-        if(p == null)
-            throw new NullPointerException("Player is null");
-
-        // Make a HashSet for all valid simple moves.
-        HashSet<TicketMove> simpleMoves = getMovesFromPlayerLocation(p);
-
-        HashSet<Move> moves = new HashSet<>(simpleMoves);
-
-        // If player has a double ticket, add all double moves.
-        if(p.tickets().getOrDefault(Ticket.DOUBLE, 0) > 0 && round + 1 < rounds.size())
-            moves.addAll(getDoubleMovesFromPlayerLocation(simpleMoves, p));
-
-        // If player has no moves available, add pass move.
-        if(moves.size() == 0)
-            moves.add(new PassMove(p.colour()));
-
-        return moves;
+    void applyMove(int move){
+        if(move == PackedMove.PASS)
+            state.playPass();
+        else if(PackedMove.isDouble(move)){
+            int second = PackedMove.second(move);
+            state.playDouble(PackedMove.ticket(move), PackedMove.destination(move),
+                    PackedMove.ticket(second), PackedMove.destination(second));
+        }
+        else state.playTicket(PackedMove.ticket(move), PackedMove.destination(move));
     }
 
-
-    List<ScotlandYardAIPlayer> getPlayers(){
-        return players;
+    /**
+     * Reverts the last move applied with applyMove
+     *
+     * @throws IllegalStateException if there is no move to revert
+     */
+    void revertMove(){
+        state.undo();
     }
 
-    ScotlandYardAIPlayer getCurrentPlayer(){
-        return players.get(currentPlayerNumber);
+    /**
+     * @return true if a detective is at mr.X's location
+     */
+    boolean isMrXCaught(){
+        return state.isOccupied(state.location(GameState.MRX));
     }
 
-    int getCurrentPlayerNumber(){
-        return currentPlayerNumber;
+    /**
+     * Converts a packed move of a player to a Move
+     *
+     * @param player the index of the player making the move
+     * @param move the packed move
+     * @return the move
+     */
+    Move toMove(int player, int move){
+        return PackedMove.toMove(state.colour(player), move);
     }
 
-    private int getCurrentRound(){
-        return round;
+    GameState state(){
+        return state;
     }
 
-    private List<Boolean> getRounds() {
-        return rounds;
+    int getCurrentPlayerNumber(){
+        return state.current();
     }
 
     Graph<Integer, Transport> getGraph() {
         return graph;
     }
 
-    @Override
-    public void visit(PassMove move){
-        // Increment current player.
-        incrementCurrentPlayer();
-    }
-
-    @Override
-    public void visit(DoubleMove move){
-        // Increment round and current player.
-        incrementCurrentPlayer();
-        incrementRound();
+    CompiledGraph<Transport> getCompiledGraph(){
+        return compiledGraph;
     }
 
-    @Override
-    public void visit(TicketMove move){
-        // If it's mr.X's turn, increment round.
-        if(currentPlayerNumber == 0)
-            incrementRound();
-        // If it's detective's turn, add ticket to mr.X.
-        else
-            players.get(0).addTicket(move.ticket());
-        // Increment current player.
-        incrementCurrentPlayer();
+    ReachBits getReachBits(){
+        return reach;
     }
-}
\ No newline at end of file
+}
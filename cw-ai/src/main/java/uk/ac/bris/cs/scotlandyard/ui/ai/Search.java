@@ -0,0 +1,633 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.NodeBits;
+import uk.ac.bris.cs.gamekit.graph.ReachBits;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Class that runs the minMax search for one thread. Each thread needs its own Search and its own model.
+class Search{
+
+    // How many nodes are visited between checks of the clock.
+    private static final int CLOCK_INTERVAL = 1024;
+    private static final int TICKETS = Ticket.values().length;
+
+    private final Cache cache;
+    private final TranspositionTable table;
+    private final Tablebase tablebase;
+    private final TranspositionTable.Entry entry = new TranspositionTable.Entry();
+    // Set again by restart.
+    private int maxDepth;
+    private boolean timed;
+    private AtomicLong deadline;
+
+    // Counters, added to a SearchStats by addTo. Every SAMPLE_INTERVAL-th evaluation and move generation is timed,
+    // and its time counted for the ones in between, as the clock costs about as much as a cheap evaluation.
+    // A sample longer than MAX_SAMPLE was paused by the collector or the scheduler, and is dropped.
+    private static final int SAMPLE_INTERVAL = 64;
+    private static final long MAX_SAMPLE = 1000000;
+    private long nodes = 0, leaves = 0, mrXMoves = 0, mrXSearched = 0, evaluations = 0, generations = 0,
+            scoreNanos = 0, generateNanos = 0, tablebaseHits = 0;
+
+    // Search scratch: the move buffers and ordering scores of each ply, and the evaluator that scores the leaves.
+    private final List<Ply> plies = new ArrayList<>();
+    private final Evaluator evaluator;
+
+    // Ordering scores of mr.X's moves. The table's move comes first, then moves that take him further from the
+    // detectives, furthest first, then the killer moves and the other moves by their history.
+    private static final int HASH = Integer.MAX_VALUE, ESCAPE = 3 << 28, KILLER = 2 << 28, MAX_HISTORY = 1 << 28;
+    // How often each (ticket, destination) of a move was the best of its node, weighted by the depth below it.
+    private int[] history = null;
+
+    // Upper bounds of the score of mr.X at each node, worked out for the leaf being searched, and the distance
+    // scores they were worked out from. The bound of a node is set when its stamp is the current one.
+    private double[] nodeBounds = null, nodeDistanceScores = null;
+    private int[] boundStamps = null;
+    private int boundStamp = 0;
+    // Mr.X's tickets at the leaf, as a configuration of the table of valid moves.
+    private int boundConfiguration;
+    // Scratch of doublesBound: the nodes mr.X's double moves may reach.
+    private long[] doubleDestinations = null;
+    // Set by scoreInBoundOrder: the bound of the moves it left out below alpha, or -infinity.
+    private double unscoredBound;
+    // Set by chooseDetectiveMove: the score after the chosen move.
+    private double detectiveScore;
+
+    // The scratch of one ply: its single and double moves, their ordering scores, the score bounds of the moves of
+    // a leaf and the killer moves of the ply.
+    private static final class Ply{
+        final MoveBuffer singles = new MoveBuffer(), doubles = new MoveBuffer();
+        int[] singleScores = new int[64], doubleScores = new int[64];
+        double[] bounds = new double[64];
+        final int[] killers = {PackedMove.NONE, PackedMove.NONE};
+    }
+
+    /**
+     * Main constructor for Search
+     *
+     * @param cache the distance cache used for scoring; not null
+     * @param table the transposition table, may be shared with other threads; null if there is none
+     * @param tablebase the endgame tablebase probed at the leaves; null if there is none
+     * @param maxDepth the number of mr.X moves to look ahead after the first
+     */
+    Search(Cache cache, TranspositionTable table, Tablebase tablebase, int maxDepth){
+        this.cache = cache;
+        evaluator = new Evaluator(cache);
+        this.table = table;
+        this.tablebase = tablebase;
+        this.maxDepth = maxDepth;
+        timed = false;
+        deadline = null;
+    }
+
+    /**
+     * Constructor for a search that stops at a deadline
+     *
+     * @param cache the distance cache used for scoring; not null
+     * @param table the transposition table, may be shared with other threads; null if there is none
+     * @param tablebase the endgame tablebase probed at the leaves; null if there is none
+     * @param maxDepth the number of mr.X moves to look ahead after the first
+     * @param deadline the System.nanoTime() at which the search throws Timeout, which may be moved while it runs
+     */
+    Search(Cache cache, TranspositionTable table, Tablebase tablebase, int maxDepth, AtomicLong deadline){
+        this.cache = cache;
+        evaluator = new Evaluator(cache);
+        this.table = table;
+        this.tablebase = tablebase;
+        this.maxDepth = maxDepth;
+        timed = true;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Makes the search look ahead to another depth and stop at another deadline, keeping its killer moves and history
+     * for the next root it searches
+     *
+     * @param maxDepth the number of mr.X moves to look ahead after the first
+     * @param deadline the System.nanoTime() at which the search throws Timeout, which may be moved while it runs; null
+     * if the search has no deadline
+     */
+    void restart(int maxDepth, AtomicLong deadline){
+        this.maxDepth = maxDepth;
+        timed = deadline != null;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Forgets the killer moves and history, before the search moves on to another position
+     */
+    void clearHistory(){
+        if(history != null)
+            Arrays.fill(history, 0);
+        for(Ply ply : plies)
+            Arrays.fill(ply.killers, PackedMove.NONE);
+    }
+
+    // Thrown out of minMax when the deadline has passed. Shared and without a stack trace, so throwing it is cheap.
+    static final class Timeout extends RuntimeException{
+        private static final long serialVersionUID = 1L;
+        static final Timeout INSTANCE = new Timeout();
+
+        private Timeout(){
+            super("Search deadline passed", null, false, false);
+        }
+    }
+
+    // Counts a node and throws Timeout if the deadline has passed.
+    private void checkClock(){
+        if(++nodes % CLOCK_INTERVAL == 0 && timed && System.nanoTime() - deadline.get() > 0)
+            throw Timeout.INSTANCE;
+    }
+
+    // Starts timing the count-th call of a kind if it is sampled: returns the System.nanoTime(), otherwise 0.
+    private static long sample(long count){
+        return count % SAMPLE_INTERVAL == 0 ? System.nanoTime() : 0;
+    }
+
+    // The time since a sample started, counted for the calls it stands for, or 0 if the call isn't sampled.
+    private static long sampled(long start){
+        if(start == 0)
+            return 0;
+        long time = System.nanoTime() - start;
+        return time > MAX_SAMPLE ? 0 : time * SAMPLE_INTERVAL;
+    }
+
+    /**
+     * Adds the search's counters to the statistics of the move and resets them
+     *
+     * @param stats the statistics
+     */
+    void addTo(SearchStats stats){
+        stats.add(SearchStats.NODES, nodes);
+        stats.add(SearchStats.LEAVES, leaves);
+        stats.add(SearchStats.MRX_MOVES, mrXMoves);
+        stats.add(SearchStats.MRX_SEARCHED, mrXSearched);
+        stats.add(SearchStats.EVALUATIONS, evaluations);
+        stats.add(SearchStats.GENERATIONS, generations);
+        stats.add(SearchStats.SCORE_NANOS, scoreNanos);
+        stats.add(SearchStats.GENERATE_NANOS, generateNanos);
+        stats.add(SearchStats.TABLEBASE_HITS, tablebaseHits);
+        nodes = leaves = mrXMoves = mrXSearched = evaluations = generations = scoreNanos = generateNanos = 0;
+        tablebaseHits = 0;
+    }
+
+    /**
+     * Computes a floating point score for a game configuration stored in a model object using multiple scores
+     *
+     * @param model the model to be scored; not null
+     * @param mover the index of the player that made the last move
+     * @return the score for the given game model
+     */
+    double scoreModel(ScotlandYardAIModel model, int mover){
+        if(model == null)
+            throw new NullPointerException("Model is null");
+
+        long start = sample(evaluations++);
+        double score = evaluator.score(model.state(), mover);
+        scoreNanos += sampled(start);
+        return score;
+    }
+
+    /**
+     * Returns the scratch of a search ply, so that the moves of enclosing plies are not overwritten
+     *
+     * @param ply the number of moves applied to the searched model
+     * @return the scratch
+     */
+    private Ply ply(int ply){
+        while(plies.size() <= ply)
+            plies.add(new Ply());
+        return plies.get(ply);
+    }
+
+    /**
+     * Chooses the move the search expects a detective to make, see chooseDetectiveMove
+     *
+     * @param node the game model, with a detective to move
+     * @return the packed move
+     */
+    int detectiveMove(ScotlandYardAIModel node){
+        MoveBuffer moves = ply(node.state().depth()).singles;
+        generateMoves(node, moves);
+        return chooseDetectiveMove(node, moves);
+    }
+
+    /**
+     * Chooses the detective's move's by looking ahead 1, for efficiency: the move after which the score is lowest.
+     * Sets detectiveScore to its score
+     *
+     * @param node the game model, with a detective to move
+     * @param moves the detective's moves
+     * @return the packed move
+     */
+    private int chooseDetectiveMove(ScotlandYardAIModel node, MoveBuffer moves){
+        double bestValue = 100000.0;
+        int bestMove = PackedMove.NONE;
+        int mover = node.getCurrentPlayerNumber();
+        for(int i = 0; i < moves.size(); i++){
+            node.applyMove(moves.get(i));
+            double score = scoreModel(node, mover);
+            node.revertMove();
+
+            if(score < bestValue || bestMove == PackedMove.NONE){
+                bestValue = score;
+                bestMove = moves.get(i);
+            }
+        }
+        detectiveScore = bestValue;
+        return bestMove;
+    }
+
+    /**
+     * Chooses the best move when looking ahead one step from a given model. For mr.X, moves are scored in the order
+     * of an upper bound of their score, which counts his moves with the tickets he has before the move. Moves are
+     * scored until no bound is above the best score, and double moves are only generated if some node they can
+     * reach has a bound above it.
+     *
+     * @param node the game model
+     * @param alpha the score the caller already has; if the best score is below it, a score between the best one
+     * and alpha may be returned instead
+     * @return the best score
+     */
+    private double chooseMove(ScotlandYardAIModel node, double alpha){
+        double maxScore = -100000.0, currentScore;
+        int mover = node.getCurrentPlayerNumber();
+        Ply ply = ply(node.state().depth());
+
+        if(mover != GameState.MRX){
+            MoveBuffer moves = ply.singles;
+            // Tries all moves, selects one with biggest score.
+            generateMoves(node, moves);
+            for(int i = 0; i < moves.size(); i++){
+                node.applyMove(moves.get(i));
+                currentScore = scoreModel(node, mover);
+                node.revertMove();
+                if(currentScore > maxScore)
+                    maxScore = currentScore;
+            }
+            return maxScore;
+        }
+
+        // Double moves can only beat the singles if a node two steps away has a bound above the best score.
+        startBounds(node);
+        if(generateSingles(node, ply) == 0){
+            node.applyMove(PackedMove.PASS);
+            maxScore = scoreModel(node, mover);
+            node.revertMove();
+            return maxScore;
+        }
+        maxScore = scoreInBoundOrder(node, ply, ply.singles, maxScore, alpha);
+        double upper = unscoredBound;
+        double doublesBound = doublesBound(node);
+        if(doublesBound > maxScore){
+            if(doublesBound < alpha)
+                upper = Double.max(upper, doublesBound);
+            else if(generateDoubles(node, ply) > 0){
+                maxScore = scoreInBoundOrder(node, ply, ply.doubles, maxScore, alpha);
+                upper = Double.max(upper, unscoredBound);
+            }
+        }
+
+        // Moves were only left out for their bounds, so the best score is exact unless it is below alpha.
+        return Double.max(maxScore, upper);
+    }
+
+    /**
+     * Scores mr.X's moves from the one with the highest bound, until the next bound is not above the best score or
+     * is below alpha. Sets unscoredBound to the bound of the first move left out
+     *
+     * @param node the game model, with mr.X to move
+     * @param ply the scratch of the leaf's ply
+     * @param moves mr.X's moves, reordered in place
+     * @param maxScore the best score so far
+     * @param alpha see chooseMove
+     * @return the best score, of maxScore and the scored moves
+     */
+    private double scoreInBoundOrder(ScotlandYardAIModel node, Ply ply, MoveBuffer moves, double maxScore,
+                                     double alpha){
+        GameState state = node.state();
+        int size = moves.size();
+        if(ply.bounds.length < size)
+            ply.bounds = new double[Integer.max(size, ply.bounds.length * 2)];
+        double[] bounds = ply.bounds;
+        for(int i = 0; i < size; i++)
+            bounds[i] = nodeBound(state, PackedMove.finalDestination(moves.get(i)));
+
+        unscoredBound = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < size; i++){
+            int top = i;
+            for(int j = i + 1; j < size; j++)
+                if(bounds[j] > bounds[top])
+                    top = j;
+            double topBound = bounds[top];
+            if(topBound <= maxScore)
+                return maxScore;
+            if(topBound < alpha){
+                unscoredBound = topBound;
+                return maxScore;
+            }
+
+            moves.swap(i, top);
+            bounds[top] = bounds[i];
+            int move = moves.get(i);
+            mrXSearched++;
+            // As scoreModel, with the distance score worked out for the bound.
+            long start = sample(evaluations++);
+            node.applyMove(move);
+            int configuration = cache.moveConfiguration(state.tickets(GameState.MRX));
+            node.revertMove();
+            int location = PackedMove.finalDestination(move);
+            double currentScore = Evaluator.score(nodeDistanceScores[location],
+                    cache.getValidMoves(location, configuration));
+            scoreNanos += sampled(start);
+            if(currentScore > maxScore)
+                maxScore = currentScore;
+        }
+        return maxScore;
+    }
+
+    // Starts a new set of node bounds, for the leaf being searched.
+    private void startBounds(ScotlandYardAIModel node){
+        if(nodeBounds == null){
+            nodeBounds = new double[node.getCompiledGraph().maxNode() + 1];
+            nodeDistanceScores = new double[nodeBounds.length];
+            boundStamps = new int[nodeBounds.length];
+        }
+        if(++boundStamp == 0){
+            Arrays.fill(boundStamps, 0);
+            boundStamp = 1;
+        }
+        boundConfiguration = cache.moveConfiguration(node.state().tickets(GameState.MRX));
+    }
+
+    /**
+     * An upper bound of mr.X's score after a move to a node. The distance score is exact, the number of his moves
+     * is taken from the table of valid moves with his current tickets, which has at least as many moves as the
+     * table has with the tickets he has left after the move
+     *
+     * @param state the state, with mr.X to move
+     * @param location the node mr.X moves to
+     * @return the bound
+     */
+    private double nodeBound(GameState state, int location){
+        if(boundStamps[location] == boundStamp)
+            return nodeBounds[location];
+        long start = sample(evaluations++);
+        double distanceScore = evaluator.distanceScore(state, location);
+        double bound = Evaluator.score(distanceScore, cache.getValidMoves(location, boundConfiguration));
+        scoreNanos += sampled(start);
+        nodeBounds[location] = bound;
+        nodeDistanceScores[location] = distanceScore;
+        boundStamps[location] = boundStamp;
+        return bound;
+    }
+
+    // An upper bound of the scores of mr.X's double moves: the highest bound of the nodes two steps away, along
+    // edges of any transport, where neither step ends on a detective.
+    private double doublesBound(ScotlandYardAIModel node){
+        GameState state = node.state();
+        if(doubleDestinations == null)
+            doubleDestinations = NodeBits.create(node.getCompiledGraph().maxNode());
+        node.getReachBits().twoSteps(state.location(GameState.MRX), ReachBits.ANY, ReachBits.ANY, state.occupied(),
+                doubleDestinations);
+
+        double bound = Double.NEGATIVE_INFINITY;
+        for(int n = NodeBits.next(doubleDestinations, 0); n >= 0; n = NodeBits.next(doubleDestinations, n + 1))
+            bound = Double.max(bound, nodeBound(state, n));
+        return bound;
+    }
+
+    /**
+     * Scores mr.X's moves for the order they are searched in, see HASH
+     *
+     * @param node the game model, with mr.X to move
+     * @param ply the scratch of the node's ply, for its killer moves
+     * @param moves mr.X's moves
+     * @param scores the array to fill, replaced by a larger one if it is too small
+     * @param hashMove the table's move, or PackedMove.NONE
+     * @return the filled scores
+     */
+    private int[] order(ScotlandYardAIModel node, Ply ply, MoveBuffer moves, int[] scores, int hashMove){
+        if(scores.length < moves.size())
+            scores = new int[moves.size() * 2];
+        if(history == null)
+            history = new int[(node.getCompiledGraph().maxNode() + 1) * TICKETS];
+        GameState state = node.state();
+        int here = nearest(state, state.location(GameState.MRX));
+        for(int i = 0; i < moves.size(); i++){
+            int move = moves.get(i);
+            int nearest = nearest(state, PackedMove.finalDestination(move));
+            if(move == hashMove)
+                scores[i] = HASH;
+            else if(nearest > here)
+                scores[i] = ESCAPE + nearest;
+            else if(move == ply.killers[0] || move == ply.killers[1])
+                scores[i] = KILLER + (move == ply.killers[0] ? 1 : 0);
+            else scores[i] = history[historyKey(move)];
+        }
+        return scores;
+    }
+
+    // Swaps the move with the highest score of the moves from index i on to index i and returns it.
+    private static int pick(MoveBuffer moves, int[] scores, int i){
+        int top = i;
+        for(int j = i + 1; j < moves.size(); j++)
+            if(scores[j] > scores[top])
+                top = j;
+        moves.swap(i, top);
+        int score = scores[i];
+        scores[i] = scores[top];
+        scores[top] = score;
+        return moves.get(i);
+    }
+
+    // The distance from a node to the nearest detective that can reach it.
+    private int nearest(GameState state, int location){
+        int nearest = Integer.MAX_VALUE;
+        for(int p = 1; p < state.players(); p++){
+            int distance = cache.getDistance(state.location(p), location, state.tickets(p));
+            if(distance > 0)
+                nearest = Integer.min(nearest, distance);
+        }
+        return nearest == Integer.MAX_VALUE ? MAX_HISTORY - 1 : nearest;
+    }
+
+    // Moves are told apart by the ticket and destination of their last step.
+    private static int historyKey(int move){
+        int last = PackedMove.isDouble(move) ? PackedMove.second(move) : move;
+        return PackedMove.destination(last) * TICKETS + PackedMove.ticket(last);
+    }
+
+    // Remembers the best move of a node of mr.X, with remaining moves of his searched below it.
+    private void remember(Ply ply, int move, int remaining){
+        if(move != ply.killers[0]){
+            ply.killers[1] = ply.killers[0];
+            ply.killers[0] = move;
+        }
+        int key = historyKey(move);
+        history[key] = Integer.min(MAX_HISTORY - 1, history[key] + (remaining + 1) * (remaining + 1));
+    }
+
+    /**
+     * MinMax algorithm for finding the best score at a given depth. Uses Alpha-Beta pruning and the transposition
+     * table. Moves are applied to the node and reverted before returning, so the node is left unchanged.
+     *
+     * @param node current game model
+     * @param depth current search depth
+     * @param maximizer true is it's mr.X's turn to make a move
+     * @param alpha alpha variable for pruning
+     * @param beta beta variable for pruning
+     * @return the score of the node
+     * @throws Timeout if the search has a deadline and it has passed, the node is then left in an unknown state
+     */
+    double minMax(ScotlandYardAIModel node, int depth, boolean maximizer, double alpha, double beta){
+        double value, bestValue;
+        checkClock();
+
+        // Looks the node up. A deep enough result is used as it is, otherwise its move is tried first.
+        long key = node.state().hash();
+        int remaining = maxDepth - depth;
+        int hashMove = PackedMove.NONE;
+        if(table != null && table.probe(key, entry)){
+            if(entry.depth >= remaining && (entry.bound == TranspositionTable.EXACT
+                    || (entry.bound == TranspositionTable.LOWER && entry.score >= beta)
+                    || (entry.bound == TranspositionTable.UPPER && entry.score <= alpha)))
+                return entry.score;
+            hashMove = entry.move;
+        }
+
+        // If the maximum depth is reached, end recursion. A capture the tablebase proves is scored as such.
+        if(depth == maxDepth){
+            leaves++;
+            int capture = tablebase == null ? Tablebase.NONE : tablebase.probe(node.state());
+            if(capture != Tablebase.NONE)
+                tablebaseHits++;
+            value = capture == Tablebase.NONE ? chooseMove(node, alpha) : Evaluator.captureScore(capture);
+            store(key, remaining, alpha, beta, value, PackedMove.NONE);
+            return value;
+        }
+
+        // If it's mr.X's turn.
+        if(maximizer){
+            double alphaOriginal = alpha;
+            bestValue = -100000.0;
+            int bestMove = PackedMove.NONE;
+            Ply ply = ply(node.state().depth());
+
+            // Searches the single moves, then generates and searches the double moves, unless the table's move is
+            // a double move, then those come first. Each stage is searched in the order given by order.
+            generateSingles(node, ply);
+            boolean doublesFirst = hashMove != PackedMove.NONE && PackedMove.isDouble(hashMove);
+            boolean cut = false;
+            for(int stage = 0; stage < 2 && !cut; stage++){
+                boolean doubles = (stage == 0) == doublesFirst;
+                MoveBuffer moves = doubles ? ply.doubles : ply.singles;
+                int[] scores;
+                if(doubles){
+                    generateDoubles(node, ply);
+                    scores = ply.doubleScores = order(node, ply, moves, ply.doubleScores, hashMove);
+                }
+                else scores = ply.singleScores = order(node, ply, moves, ply.singleScores, hashMove);
+
+                for(int i = 0; i < moves.size(); i++){
+                    int m = pick(moves, scores, i);
+                    mrXSearched++;
+
+                    node.applyMove(m);
+                    value = minMax(node, depth, false, alpha, beta);
+                    node.revertMove();
+
+                    if(value > bestValue || bestMove == PackedMove.NONE){
+                        bestValue = value;
+                        bestMove = m;
+                    }
+
+                    // Alpha-Beta pruning.
+                    alpha = Double.max(alpha, bestValue);
+                    if(beta <= alpha){
+                        cut = true;
+                        break;
+                    }
+                }
+            }
+
+            // Without single moves there are no double moves either, mr.X has to pass.
+            if(bestMove == PackedMove.NONE){
+                node.applyMove(PackedMove.PASS);
+                bestValue = minMax(node, depth, false, alpha, beta);
+                node.revertMove();
+                bestMove = PackedMove.PASS;
+            }
+            else remember(ply, bestMove, remaining);
+            store(key, remaining, alphaOriginal, beta, bestValue, bestMove);
+            return bestValue;
+        }
+        // If it's a detective's turn.
+        else{
+            int bestMove;
+            MoveBuffer moves = ply(node.state().depth()).singles;
+            generateMoves(node, moves);
+
+            // The detective's choice only depends on the state, so a stored choice is reused as it is.
+            if(moves.contains(hashMove))
+                bestMove = hashMove;
+            else{
+                bestMove = chooseDetectiveMove(node, moves);
+                // Alpha-Beta pruning.
+                alpha = Double.min(alpha, detectiveScore);
+            }
+
+            // Plays the chosen move and recurses further.
+            node.applyMove(bestMove);
+            if(node.getCurrentPlayerNumber() == 0)
+                value = minMax(node, depth + 1, true, alpha, beta);
+            else value = minMax(node, depth, false, alpha, beta);
+            node.revertMove();
+
+            store(key, remaining, alpha, beta, value, bestMove);
+            return value;
+        }
+    }
+
+    // Generates the moves of the player to move, counting the generation.
+    private void generateMoves(ScotlandYardAIModel node, MoveBuffer moves){
+        long start = sample(generations++);
+        node.generateMoves(node.getCurrentPlayerNumber(), moves);
+        generateNanos += sampled(start);
+    }
+
+    // Generates mr.X's single moves into the ply, counting the generation and the moves.
+    private int generateSingles(ScotlandYardAIModel node, Ply ply){
+        long start = sample(generations++);
+        int singles = node.generateSingles(GameState.MRX, ply.singles);
+        generateNanos += sampled(start);
+        mrXMoves += singles;
+        return singles;
+    }
+
+    // Generates mr.X's double moves from the ply's single moves, counting the generation and the moves.
+    private int generateDoubles(ScotlandYardAIModel node, Ply ply){
+        long start = sample(generations++);
+        int doubles = node.generateDoubles(GameState.MRX, ply.singles, ply.doubles);
+        generateNanos += sampled(start);
+        mrXMoves += doubles;
+        return doubles;
+    }
+
+    // Stores a node's result, with its bound type found from the window it was searched with.
+    private void store(long key, int remaining, double alpha, double beta, double value, int move){
+        if(table == null)
+            return;
+        int bound = TranspositionTable.EXACT;
+        if(value <= alpha)
+            bound = TranspositionTable.UPPER;
+        else if(value >= beta)
+            bound = TranspositionTable.LOWER;
+        table.store(key, remaining, bound, value, move);
+    }
+}
@@ -0,0 +1,116 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+// Class that reads the AI's search settings from system properties, e.g. -DaiThreads=4.
+final class SearchConfig{
+
+    private SearchConfig(){
+
+    }
+
+    /**
+     * @return number of threads used to search, defaults to the number of available cores
+     */
+    static int threads(){
+        return Math.max(1, Integer.getInteger("aiThreads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @return true if the chosen move must not depend on thread timing, e.g. for tests and self-play replays. A
+     * deterministic search ignores the clock and always searches to maxDepth
+     */
+    static boolean deterministic(){
+        return Boolean.getBoolean("aiDeterministic");
+    }
+
+    /**
+     * @return the game's move timeout in milliseconds, the players can't read it from the game so it's passed in.
+     * Defaults to one minute, the default of the game setup screen
+     */
+    static long timeout(){
+        return Long.getLong("aiTimeout", 60000);
+    }
+
+    /**
+     * @return milliseconds a move may be searched for, defaults to a quarter of the timeout
+     */
+    static long moveTime(){
+        return Math.max(1, Long.getLong("aiMoveTime", timeout() / 4));
+    }
+
+    /**
+     * @return the number of playouts of a deterministic Monte Carlo search, which can't stop at the clock. Defaults
+     * to 2000
+     */
+    static int playouts(){
+        return Math.max(1, Integer.getInteger("aiPlayouts", 2000));
+    }
+
+    /**
+     * @return the transposition table holds 2^tableBits entries of 24 bytes, defaults to 2^20
+     */
+    static int tableBits(){
+        return Math.max(1, Math.min(30, Integer.getInteger("aiTableBits", 20)));
+    }
+
+    /**
+     * @return how distances are found: "table" to compute the distance table of the map, or load it from its cache
+     * file, "search" to search for them when they're asked for, see OnDemandDistances, or "auto", the default, for the
+     * table on the standard map or a map that has a cache file and a search on any other map
+     */
+    static String distances(){
+        return System.getProperty("aiDistances", "auto");
+    }
+
+    /**
+     * @return the number of distances a search for them remembers, defaults to 2^16
+     */
+    static int distanceMemo(){
+        return Math.max(1, Integer.getInteger("aiDistanceMemo", 1 << 16));
+    }
+
+    /**
+     * @return true if mr.X's moves should be taken from the opening book when there is one, see OpeningBookBuilder.
+     * Defaults to true
+     */
+    static boolean book(){
+        return Boolean.parseBoolean(System.getProperty("aiBook", "true"));
+    }
+
+    /**
+     * @return true if the search should probe the endgame tablebase when there is one, see TablebaseGenerator.
+     * Defaults to true
+     */
+    static boolean tablebase(){
+        return Boolean.parseBoolean(System.getProperty("aiTablebase", "true"));
+    }
+
+    /**
+     * @return true if mr.X's next position should be searched while the detectives decide, see RootSearch.ponder.
+     * Defaults to true, a deterministic search never ponders
+     */
+    static boolean ponder(){
+        return Boolean.parseBoolean(System.getProperty("aiPonder", "true"));
+    }
+
+    /**
+     * @return true if search statistics should be printed after every move and at the end of a game
+     */
+    static boolean printStats(){
+        return Boolean.getBoolean("aiStats");
+    }
+
+    /**
+     * @return true if the statistics of every move should be published as a JMX bean, see SearchStats. Defaults to
+     * false
+     */
+    static boolean jmx(){
+        return Boolean.getBoolean("aiJmx");
+    }
+
+    /**
+     * @return the deepest search iteration, in mr.X moves after the first. Defaults to 2 for a deterministic search
+     */
+    static int maxDepth(){
+        return Math.max(1, Integer.getInteger("aiMaxDepth", deterministic() ? 2 : 64));
+    }
+}
@@ -0,0 +1,200 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Class that counts what the search does for the move being searched. Each Search counts in its own fields and
+// adds them here when it ends, so the search pays a field increment per count and the counters can be read from
+// any thread at any time, by JMX or the visualiser, without slowing it down. Pondering isn't counted.
+final class SearchStats implements SearchStatsMBean{
+
+    // The counters, added to by Search.addTo.
+    static final int NODES = 0, LEAVES = 1, MRX_MOVES = 2, MRX_SEARCHED = 3, EVALUATIONS = 4, GENERATIONS = 5,
+            SCORE_NANOS = 6, GENERATE_NANOS = 7, TABLEBASE_HITS = 8;
+    private static final int COUNTERS = 9;
+
+    private static final String DOMAIN = "uk.ac.bris.cs.scotlandyard.ui.ai";
+
+    private final TranspositionTable table;
+    private final LongAdder[] counters = new LongAdder[COUNTERS];
+    // Written by the thread that searches, read by any. The table's counters are read at the start and the end of
+    // the move, as pondering probes the table between moves.
+    private volatile long moves = 0, start = 0, end = 0, tableHits = 0, tableMisses = 0, endHits = 0, endMisses = 0;
+    private volatile int depth = 0;
+    private ObjectName registered = null;
+
+    /**
+     * Main constructor for SearchStats
+     *
+     * @param table the transposition table of the search, whose counters are read at the start of a move
+     */
+    SearchStats(TranspositionTable table){
+        this.table = table;
+        for(int i = 0; i < COUNTERS; i++)
+            counters[i] = new LongAdder();
+    }
+
+    /**
+     * Starts counting a move, forgetting the last one
+     */
+    void startMove(){
+        for(LongAdder counter : counters)
+            counter.reset();
+        depth = 0;
+        tableHits = table.hits();
+        tableMisses = table.misses();
+        end = 0;
+        start = System.nanoTime();
+    }
+
+    /**
+     * Ends counting the move
+     */
+    void endMove(){
+        endHits = table.hits();
+        endMisses = table.misses();
+        end = System.nanoTime();
+        moves++;
+    }
+
+    /**
+     * @param depth the depth of the iteration just completed
+     */
+    void completed(int depth){
+        this.depth = depth;
+    }
+
+    /**
+     * Adds to a counter
+     *
+     * @param counter the counter, e.g. NODES
+     * @param value the value added
+     */
+    void add(int counter, long value){
+        counters[counter].add(value);
+    }
+
+    private long get(int counter){
+        return counters[counter].sum();
+    }
+
+    /**
+     * Publishes the statistics as a JMX bean of type SearchStats, named so that the games of one JVM can be told
+     * apart, unless a bean is published under the same name already
+     *
+     * @param id the name of the bean, e.g. of the AI's factory; a valid ObjectName value
+     */
+    void register(String id){
+        try{
+            ObjectName name = new ObjectName(DOMAIN + ":type=SearchStats,name=" + id);
+            if(ManagementFactory.getPlatformMBeanServer().isRegistered(name)){
+                System.out.println("Not publishing search statistics: " + name + " is taken");
+                return;
+            }
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            registered = name;
+        }
+        catch(JMException e){
+            System.out.println("Not publishing search statistics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the JMX bean published by register, if there is one
+     */
+    void unregister(){
+        if(registered == null)
+            return;
+        try{
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+        }
+        catch(JMException e){
+            System.out.println("Search statistics were not unpublished: " + e.getMessage());
+        }
+        registered = null;
+    }
+
+    @Override
+    public long getMoves(){
+        return moves;
+    }
+
+    @Override
+    public int getDepth(){
+        return depth;
+    }
+
+    @Override
+    public double getMoveMillis(){
+        long s = start, e = end;
+        return s == 0 ? 0 : ((e == 0 ? System.nanoTime() : e) - s) / 1e6;
+    }
+
+    @Override
+    public long getNodes(){
+        return get(NODES);
+    }
+
+    @Override
+    public double getNodesPerSecond(){
+        double millis = getMoveMillis();
+        return millis == 0 ? 0 : getNodes() / millis * 1000;
+    }
+
+    @Override
+    public long getLeaves(){
+        return get(LEAVES);
+    }
+
+    @Override
+    public double getPruneRate(){
+        long moves = get(MRX_MOVES);
+        return moves == 0 ? 0 : 1 - (double) get(MRX_SEARCHED) / moves;
+    }
+
+    @Override
+    public long getEvaluations(){
+        return get(EVALUATIONS);
+    }
+
+    @Override
+    public long getMoveGenerations(){
+        return get(GENERATIONS);
+    }
+
+    @Override
+    public double getScoreMillis(){
+        return get(SCORE_NANOS) / 1e6;
+    }
+
+    @Override
+    public double getGenerateMillis(){
+        return get(GENERATE_NANOS) / 1e6;
+    }
+
+    @Override
+    public double getTableHitRate(){
+        boolean ended = end != 0;
+        long hits = (ended ? endHits : table.hits()) - tableHits;
+        long probes = hits + (ended ? endMisses : table.misses()) - tableMisses;
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    @Override
+    public long getTablebaseHits(){
+        return get(TABLEBASE_HITS);
+    }
+
+    @Override
+    public String toString(){
+        return String.format("move %d: depth %d in %.1f ms%n"
+                        + "nodes %d (%.0f/s), leaves %d, pruned %.1f%%%n"
+                        + "evaluations %d in %.1f ms, move generations %d in %.1f ms%n"
+                        + "table hits %.1f%%, tablebase hits %d",
+                moves + (end == 0 ? 1 : 0), depth, getMoveMillis(), getNodes(), getNodesPerSecond(), getLeaves(),
+                getPruneRate() * 100, getEvaluations(), getScoreMillis(), getMoveGenerations(), getGenerateMillis(),
+                getTableHitRate() * 100, getTablebaseHits());
+    }
+}
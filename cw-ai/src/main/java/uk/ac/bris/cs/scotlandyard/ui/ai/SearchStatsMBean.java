@@ -0,0 +1,73 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+// Interface of the JMX bean the AI publishes its search statistics through when started with -DaiJmx=true, see
+// SearchStats. Every value is of the move being searched, or of the last move once it is played. JMX only reads
+// the attributes of a public interface.
+public interface SearchStatsMBean{
+
+    /**
+     * @return the number of moves searched this game, not counting the one being searched
+     */
+    long getMoves();
+
+    /**
+     * @return the deepest completed iteration, in mr.X moves after the first
+     */
+    int getDepth();
+
+    /**
+     * @return the milliseconds the move has been searched for
+     */
+    double getMoveMillis();
+
+    /**
+     * @return the nodes visited by minMax
+     */
+    long getNodes();
+
+    /**
+     * @return the nodes visited per second of the move's search
+     */
+    double getNodesPerSecond();
+
+    /**
+     * @return the nodes at which mr.X's moves are scored instead of searched
+     */
+    long getLeaves();
+
+    /**
+     * @return the fraction of mr.X's generated moves that were neither searched nor scored, as alpha-beta or the
+     * bounds of his moves at the leaves cut them off
+     */
+    double getPruneRate();
+
+    /**
+     * @return the number of states scored, counting the bounds of mr.X's moves worked out at the leaves
+     */
+    long getEvaluations();
+
+    /**
+     * @return the number of times moves were generated
+     */
+    long getMoveGenerations();
+
+    /**
+     * @return the estimated milliseconds spent scoring states, over all search threads, from a sample of the calls
+     */
+    double getScoreMillis();
+
+    /**
+     * @return the estimated milliseconds spent generating moves, over all search threads, from a sample of the calls
+     */
+    double getGenerateMillis();
+
+    /**
+     * @return the fraction of transposition table probes that found their state
+     */
+    double getTableHitRate();
+
+    /**
+     * @return the number of leaves scored from the endgame tablebase
+     */
+    long getTablebaseHits();
+}
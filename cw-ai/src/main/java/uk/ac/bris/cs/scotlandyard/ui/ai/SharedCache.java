@@ -0,0 +1,122 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+// Class that shares one read-only Cache per map between all the games running in the process.
+// Caches are keyed by the fingerprint of the map and counted by reference: the first game on a map loads or computes
+// the cache while later games wait for it, and the cache is dropped once the last game using it releases it.
+final class SharedCache{
+
+    private static final Map<Long, Entry> caches = new HashMap<>();
+
+    private static final class Entry{
+        final FutureTask<Cache> cache;
+        int references = 0;
+
+        Entry(FutureTask<Cache> cache){
+            this.cache = cache;
+        }
+    }
+
+    private SharedCache(){
+    }
+
+    /**
+     * Gets the cache of the model's map, loading or computing it if no game is using it. Every acquired cache must
+     * be given back with release
+     *
+     * @param model a model of the game; only its map is used
+     * @return the cache; never null
+     */
+    static Cache acquire(ScotlandYardAIModel model){
+        long fingerprint = model.getCompiledGraph().fingerprint();
+        Entry entry;
+        synchronized(caches){
+            entry = caches.computeIfAbsent(fingerprint, key -> new Entry(new FutureTask<>(() -> build(model))));
+            entry.references++;
+        }
+
+        // Only the first caller builds the cache, the others wait for it outside the lock.
+        entry.cache.run();
+        try{
+            return entry.cache.get();
+        }
+        catch(InterruptedException | ExecutionException e){
+            synchronized(caches){
+                if(--entry.references == 0)
+                    caches.remove(fingerprint, entry);
+            }
+            if(e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cache could not be built", e);
+        }
+    }
+
+    /**
+     * Gives back a cache got from acquire. The cache is dropped once every game has given it back
+     *
+     * @param cache the cache
+     */
+    static void release(Cache cache){
+        synchronized(caches){
+            Entry entry = caches.get(cache.fingerprint());
+            if(entry == null || entry.references == 0)
+                throw new IllegalStateException("Cache was released more times than it was acquired");
+            if(--entry.references == 0)
+                caches.remove(cache.fingerprint());
+        }
+    }
+
+    /**
+     * @param fingerprint the fingerprint of a map
+     * @return the file the cache of the map is saved in
+     */
+    static File file(long fingerprint){
+        return new File(String.format("cache-%016x.dat", fingerprint));
+    }
+
+    // Loads the cache of the model's map from its file, or computes it and saves it for the next run. Any other map
+    // than the standard one searches for its distances instead, unless it has a file, see SearchConfig.distances.
+    private static Cache build(ScotlandYardAIModel model){
+        File file = file(model.getCompiledGraph().fingerprint());
+        String distances = SearchConfig.distances();
+        if(distances.equals("search") || !distances.equals("table") && !file.isFile()
+                && (model.getCompiledGraph().maxNode() >= Cache.NODES || !isStandard(model.getCompiledGraph())))
+            return Cache.onDemand(model, SearchConfig.distanceMemo());
+        try{
+            return Cache.load(file, model.getCompiledGraph().fingerprint());
+        }
+        catch(IOException e){
+            // A missing or stale cache is computed again.
+            System.out.println("Computing " + file + ": " + e.getMessage());
+        }
+        Cache cache = new Cache(model);
+        try{
+            cache.write(file);
+        }
+        catch(IOException e){
+            System.out.println("Exception: " + e);
+        }
+        return cache;
+    }
+
+    private static boolean isStandard(CompiledGraph<Transport> graph){
+        try{
+            return graph.fingerprint() == CompiledGraph.compile(StandardGame.standardGraph(), Transport.class)
+                    .fingerprint();
+        }
+        catch(IOException e){
+            System.out.println("Exception: " + e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Class that holds the endgame tablebase built by TablebaseGenerator: for mr.X at any node against one or two
+// detectives, with mr.X holding up to 2 double tickets, the number of rounds in which the detectives force his
+// capture, if they do within the rounds the tablebase was built for. In the subgame mr.X may take any edge, as if he
+// had secret tickets to spare, and the detectives any edge but a ferry, as if they had tickets to spare, so a
+// capture it proves is forced in the real game too as long as the detectives have the tickets, the game lasts long
+// enough and the other detectives are too far away to get in the way, see probe.
+//
+// The tablebase is loaded by memory mapping a tablebase file: a header like the opening book's, then for every
+// subgame, mr.X's double tickets and the detectives' locations, the offset of its entries, then the entries, then
+// the distances between nodes along the detectives' edges. Only positions with a forced capture have an entry, of
+// two bytes, mr.X's location and the number of rounds, in ascending order of location. Those are well
+// under one percent of all positions, a few hundred kilobytes for three rounds.
+final class Tablebase{
+
+    /**
+     * Returned by probe when the tablebase doesn't prove a capture
+     */
+    static final int NONE = -1;
+    // The subgames are built for mr.X with 0, 1 and 2 double tickets, each double move leading to the one with a
+    // ticket less. A mr.X with more has more escapes than any subgame allows him, so the tablebase proves nothing.
+    static final int DOUBLES = 3;
+    // The number of rounds of an entry is kept in its low bits, so the tablebase can't be built for more.
+    static final int MAX_ROUNDS = 15;
+
+    private static final int MAGIC = 0x53595442, VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int ROUND_BITS = 4;
+    private static final Ticket[] DETECTIVE_TICKETS = {Ticket.TAXI, Ticket.BUS, Ticket.UNDERGROUND};
+
+    private final IntBuffer offsets;
+    private final ShortBuffer entries;
+    private final ByteBuffer distances;
+    private final int nodes, rounds;
+
+    private Tablebase(IntBuffer offsets, ShortBuffer entries, ByteBuffer distances, int nodes, int rounds){
+        this.offsets = offsets;
+        this.entries = entries;
+        this.distances = distances;
+        this.nodes = nodes;
+        this.rounds = rounds;
+    }
+
+    /**
+     * Loads a tablebase file by memory mapping it
+     *
+     * @param file the tablebase file, see write
+     * @param fingerprint the fingerprint of the map the tablebase must have been built on
+     * @return the tablebase
+     * @throws IOException if the file can't be read, was written by another version, for another map or is corrupt
+     */
+    static Tablebase load(File file, long fingerprint) throws IOException{
+        if(!file.isFile())
+            throw new IOException(file + " does not exist");
+        MappedByteBuffer mapped;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            if(channel.size() < HEADER_SIZE)
+                throw new IOException(file + " is not a tablebase file");
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if(mapped.getInt() != MAGIC)
+            throw new IOException(file + " is not a tablebase file");
+        if(mapped.getInt() != VERSION)
+            throw new IOException(file + " was written by another version");
+        int nodes = mapped.getShort();
+        int rounds = mapped.getShort();
+        int size = mapped.getInt();
+        if(mapped.getLong() != fingerprint)
+            throw new IOException(file + " was built on another map");
+        long checksum = mapped.getLong();
+        long offsetsSize = 4L * (subgames(nodes) + 1);
+        if(nodes < 1 || rounds < 1 || rounds > MAX_ROUNDS || size < 0
+                || mapped.capacity() != HEADER_SIZE + offsetsSize + 2L * size + (long) nodes * nodes)
+            throw new IOException(file + " has the wrong size");
+
+        mapped.position(HEADER_SIZE);
+        ByteBuffer body = mapped.slice();
+        if(checksum(body) != checksum)
+            throw new IOException(file + " is corrupt");
+
+        ByteBuffer offsets = body.duplicate().limit((int) offsetsSize);
+        ByteBuffer entries = body.duplicate().position((int) offsetsSize).limit((int) offsetsSize + 2 * size);
+        ByteBuffer distances = body.duplicate().position((int) offsetsSize + 2 * size);
+        return new Tablebase(offsets.slice().asIntBuffer(), entries.slice().asShortBuffer(), distances.slice(),
+                nodes, rounds);
+    }
+
+    /**
+     * Loads the tablebase of a map if there is one
+     *
+     * @param fingerprint the fingerprint of the map
+     * @return the tablebase, or null if the map has no usable tablebase file
+     */
+    static Tablebase find(long fingerprint){
+        File file = file(fingerprint);
+        if(!file.isFile())
+            return null;
+        try{
+            return load(file, fingerprint);
+        }
+        catch(IOException e){
+            System.out.println("Ignoring " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param fingerprint the fingerprint of a map
+     * @return the file the tablebase of the map is saved in
+     */
+    static File file(long fingerprint){
+        return new File(String.format("tablebase-%016x.dat", fingerprint));
+    }
+
+    // The number of subgames: for each number of double tickets, each pair of detective locations. A pair of equal
+    // locations stands for a single detective.
+    private static int subgames(int nodes){
+        return DOUBLES * nodes * nodes;
+    }
+
+    /**
+     * @param doubles mr.X's double tickets, at most DOUBLES - 1
+     * @param first the location of the detective that moves first
+     * @param second the location of the detective that moves second, or first for a single detective
+     * @param nodes the number of node indices of the map, its maximum node + 1
+     * @return the index of the subgame
+     */
+    static int subgame(int doubles, int first, int second, int nodes){
+        return (doubles * nodes + first) * nodes + second;
+    }
+
+    /**
+     * Packs an entry
+     *
+     * @param mrX mr.X's location
+     * @param rounds the number of rounds to his capture, 1 to MAX_ROUNDS
+     * @return the entry
+     */
+    static short entry(int mrX, int rounds){
+        return (short) (mrX << ROUND_BITS | rounds);
+    }
+
+    /**
+     * Writes a tablebase file. The file is written next to its final name and then moved in place, so a reader
+     * never sees a partly written file
+     *
+     * @param file the tablebase file
+     * @param fingerprint the fingerprint of the map the tablebase was built on
+     * @param nodes the number of node indices of the map, its maximum node + 1
+     * @param rounds the number of rounds the tablebase was built for, at most MAX_ROUNDS
+     * @param offsets for every subgame, see subgame, the index of its first entry, then the number of entries
+     * @param entries the entries, see entry, of each subgame in ascending order of mr.X's location
+     * @param distances the distances between nodes along the detectives' edges, by from * nodes + to, at most 255
+     * @throws IOException if the file can't be written
+     */
+    static void write(File file, long fingerprint, int nodes, int rounds, int[] offsets, short[] entries,
+                      byte[] distances) throws IOException{
+        if(offsets.length != subgames(nodes) + 1 || offsets[offsets.length - 1] != entries.length)
+            throw new IllegalArgumentException("Every subgame needs an offset");
+        if(distances.length != nodes * nodes)
+            throw new IllegalArgumentException("Every pair of nodes needs a distance");
+        if(rounds < 1 || rounds > MAX_ROUNDS)
+            throw new IllegalArgumentException("Rounds must be 1 to " + MAX_ROUNDS);
+        if(nodes > 1 << Short.SIZE - 1 - ROUND_BITS)
+            throw new IllegalArgumentException("Too many nodes for an entry");
+
+        ByteBuffer body = ByteBuffer.allocate(4 * offsets.length + 2 * entries.length + distances.length);
+        body.asIntBuffer().put(offsets);
+        body.position(4 * offsets.length);
+        body.asShortBuffer().put(entries);
+        body.position(4 * offsets.length + 2 * entries.length);
+        body.put(distances);
+        body.clear();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putShort((short) nodes).putShort((short) rounds).putInt(entries.length);
+        header.putLong(fingerprint).putLong(checksum(body));
+        header.clear();
+
+        Path target = file.getAbsoluteFile().toPath();
+        Path temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+        try{
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)){
+                while(header.hasRemaining())
+                    channel.write(header);
+                while(body.hasRemaining())
+                    channel.write(body);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally{
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long checksum(ByteBuffer body){
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        return crc.getValue();
+    }
+
+    /**
+     * Looks up a subgame
+     *
+     * @param doubles mr.X's double tickets, at most DOUBLES - 1
+     * @param first the location of the detective that moves first
+     * @param second the location of the detective that moves second, or first for a single detective
+     * @param mrX mr.X's location, with mr.X to move
+     * @return the number of rounds in which the detectives force his capture, or NONE
+     */
+    int lookup(int doubles, int first, int second, int mrX){
+        int subgame = subgame(doubles, first, second, nodes);
+        int low = offsets.get(subgame), high = offsets.get(subgame + 1) - 1;
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            int entry = entries.get(middle);
+            int location = entry >>> ROUND_BITS;
+            if(location < mrX)
+                low = middle + 1;
+            else if(location > mrX)
+                high = middle - 1;
+            else return entry & (1 << ROUND_BITS) - 1;
+        }
+        return NONE;
+    }
+
+    /**
+     * Finds the fewest rounds in which one or two of the detectives force mr.X's capture. A subgame's capture holds
+     * in the game if the game lasts that many more rounds even with mr.X's double moves, its detectives have a
+     * ticket of each kind for every round, and no other detective can reach a node in that many rounds that one
+     * of them can, so none gets in their way. Other detectives only take nodes from mr.X and never one the
+     * subgame's detectives need. Nothing is proven for a mr.X with more than DOUBLES - 1 double tickets
+     *
+     * @param state the state, with mr.X to move
+     * @return the number of rounds, of mr.X's moves, or NONE
+     */
+    int probe(GameState state){
+        int mrX = state.location(GameState.MRX);
+        // Mr.X is already caught.
+        if(state.isOccupied(mrX))
+            return NONE;
+        int doubles = state.tickets(GameState.MRX, Ticket.DOUBLE);
+        if(doubles >= DOUBLES)
+            return NONE;
+        int roundsLeft = state.rounds() - state.round();
+
+        int best = NONE;
+        for(int i = 1; i < state.players(); i++)
+            for(int j = i; j < state.players(); j++){
+                int found = lookup(doubles, state.location(i), state.location(j), mrX);
+                if(found == NONE || (best != NONE && found >= best))
+                    continue;
+                // Every move of mr.X but the last one may be a double move.
+                if(roundsLeft < found + Integer.min(doubles, found - 1))
+                    continue;
+                if(hasTickets(state, i, found) && hasTickets(state, j, found) && apart(state, i, j, found))
+                    best = found;
+            }
+        return best;
+    }
+
+    // True if the detective has a ticket of each kind it can use for each of the given number of rounds.
+    private static boolean hasTickets(GameState state, int detective, int rounds){
+        for(Ticket ticket : DETECTIVE_TICKETS)
+            if(state.tickets(detective, ticket) < rounds)
+                return false;
+        return true;
+    }
+
+    // True if no detective but i and j can reach a node in the given number of rounds that i or j can.
+    private boolean apart(GameState state, int i, int j, int rounds){
+        for(int p = 1; p < state.players(); p++)
+            if(p != i && p != j && (distance(state.location(p), state.location(i)) <= 2 * rounds
+                    || distance(state.location(p), state.location(j)) <= 2 * rounds))
+                return false;
+        return true;
+    }
+
+    private int distance(int from, int to){
+        return distances.get(from * nodes + to) & 0xff;
+    }
+
+    /**
+     * @return the number of rounds the tablebase was built for
+     */
+    int rounds(){
+        return rounds;
+    }
+
+    /**
+     * @return the number of positions with a forced capture
+     */
+    int size(){
+        return entries.limit();
+    }
+}
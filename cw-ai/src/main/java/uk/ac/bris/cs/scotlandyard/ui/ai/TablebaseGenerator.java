@@ -0,0 +1,309 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.NodeBits;
+import uk.ac.bris.cs.gamekit.graph.ReachBits;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+// Class that builds the endgame tablebase offline by retrograde analysis of every subgame of Tablebase, round by
+// round. For each subgame, the detectives' locations, the nodes from which mr.X is caught within r rounds are kept
+// as a NodeBits set, so a round is worked out from the sets of the round before with word operations:
+//
+//   captures: the nodes mr.X may have moved to from which the detectives catch him in their moves of this round,
+//             or reach a subgame in which he is caught within r - 1 rounds, joined over the detectives' moves
+//   wins:     the nodes from which every single move of mr.X, and every double move if he has a double ticket,
+//             ends in captures, as do those from which he can't move at all
+//
+// Each step is split over the locations of the first detective across a ForkJoinPool. Run from cw-ai as
+//
+//   mvn compile exec:java -Dexec.mainClass=uk.ac.bris.cs.scotlandyard.ui.ai.TablebaseGenerator
+//       -Dexec.args="--rounds 3 --threads 8"
+//
+// which writes the tablebase file to the working directory, where the AI looks for it.
+public final class TablebaseGenerator{
+
+    // Locations of the first detective worked out by one task.
+    private static final int GRAIN = 8;
+
+    private final CompiledGraph<Transport> graph;
+    private final ReachBits reach;
+    private final int nodes, words;
+    // The nodes each node is one step away from along the edges the detectives can use.
+    private final int[][] steps;
+
+    /**
+     * Main constructor for TablebaseGenerator
+     *
+     * @param graph the map; not null
+     */
+    TablebaseGenerator(CompiledGraph<Transport> graph){
+        this.graph = graph;
+        reach = new ReachBits(graph);
+        nodes = graph.maxNode() + 1;
+        words = reach.words();
+        steps = new int[nodes][];
+        for(int i = 0; i < graph.size(); i++){
+            int node = graph.node(i);
+            steps[node] = new int[graph.degree(node)];
+            int count = 0;
+            for(int e = graph.firstEdge(node); e < graph.endEdge(node); e++){
+                int target = graph.target(e);
+                if(graph.data(e) != Transport.FERRY && !contains(steps[node], count, target))
+                    steps[node][count++] = target;
+            }
+            steps[node] = Arrays.copyOf(steps[node], count);
+        }
+    }
+
+    private static boolean contains(int[] array, int length, int value){
+        for(int i = 0; i < length; i++)
+            if(array[i] == value)
+                return true;
+        return false;
+    }
+
+    public static void main(String[] args) throws IOException{
+        Map<String, String> options = new HashMap<>();
+        for(int i = 0; i < args.length; i++){
+            if(!args[i].startsWith("--"))
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+            boolean flag = i + 1 == args.length || args[i + 1].startsWith("--");
+            options.put(args[i].substring(2), flag ? "" : args[++i]);
+        }
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "3"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(SearchConfig.threads())));
+        if(rounds < 1 || rounds > Tablebase.MAX_ROUNDS)
+            throw new IllegalArgumentException("Rounds must be 1 to " + Tablebase.MAX_ROUNDS);
+
+        CompiledGraph<Transport> graph = CompiledGraph.compile(StandardGame.standardGraph(), Transport.class);
+        File file = options.containsKey("out") ? new File(options.get("out")) : Tablebase.file(graph.fingerprint());
+
+        long start = System.nanoTime();
+        TablebaseGenerator generator = new TablebaseGenerator(graph);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<long[]> wins;
+        try{
+            wins = generator.build(pool, rounds);
+        }
+        finally{
+            pool.shutdown();
+        }
+        int size = generator.write(file, wins);
+        System.out.printf("%d positions with a forced capture within %d rounds in %.0f s, written to %s%n", size,
+                rounds, (System.nanoTime() - start) / 1e9, file);
+    }
+
+    /**
+     * Works out the wins of the detectives of every round
+     *
+     * @param pool the pool the steps are split over
+     * @param rounds the number of rounds
+     * @return for each round r from 1, the nodes from which mr.X is caught within r rounds, as a NodeBits set of
+     * words() words at words() * Tablebase.subgame for each subgame
+     */
+    List<long[]> build(ForkJoinPool pool, int rounds){
+        int size = Tablebase.DOUBLES * nodes * nodes * words;
+        List<long[]> wins = new ArrayList<>();
+        long[] last = new long[size];
+        for(int r = 1; r <= rounds; r++){
+            long[] previous = last, captures = new long[size], next = new long[size];
+            pool.invoke(new Step(first -> captures(previous, captures, first), 0, graph.size()));
+            pool.invoke(new Step(first -> wins(captures, next, first), 0, graph.size()));
+            wins.add(next);
+            last = next;
+
+            int count = 0;
+            for(long word : next)
+                count += Long.bitCount(word);
+            System.out.printf("Round %d: %d positions%n", r, count);
+        }
+        return wins;
+    }
+
+    // Splits the locations of the first detective, by index in the graph, in halves until at most GRAIN are left.
+    private final class Step extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+
+        private final IntConsumer work;
+        private final int from, to;
+
+        Step(IntConsumer work, int from, int to){
+            this.work = work;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > GRAIN){
+                int middle = (from + to) >>> 1;
+                invokeAll(new Step(work, from, middle), new Step(work, middle, to));
+                return;
+            }
+            for(int i = from; i < to; i++)
+                work.accept(graph.node(i));
+        }
+    }
+
+    /**
+     * Works out the captures of the subgames with the first detective at a location. A detective with no move,
+     * as the other detective takes its only neighbour, passes
+     *
+     * @param wins the wins of the round before
+     * @param captures the captures to fill
+     * @param first the location of the first detective
+     */
+    private void captures(long[] wins, long[] captures, int first){
+        for(int doubles = 0; doubles < Tablebase.DOUBLES; doubles++)
+            for(int i = 0; i < graph.size(); i++){
+                int second = graph.node(i);
+                int to = Tablebase.subgame(doubles, first, second, nodes) * words;
+                boolean firstMoved = false;
+                for(int firstTo : steps[first])
+                    if(firstTo != second || first == second){
+                        firstMoved = true;
+                        capture(wins, captures, to, doubles, firstTo, first == second ? firstTo : second);
+                    }
+                if(!firstMoved)
+                    capture(wins, captures, to, doubles, first, second);
+            }
+    }
+
+    // Adds to the captures at offset to the nodes mr.X is caught on after the first detective moved to firstTo,
+    // which the second detective at second then moves on from. A single detective is at firstTo and second.
+    private void capture(long[] wins, long[] captures, int to, int doubles, int firstTo, int second){
+        captures[to + (firstTo >>> 6)] |= 1L << firstTo;
+        if(firstTo == second){
+            or(captures, to, wins, Tablebase.subgame(doubles, firstTo, firstTo, nodes) * words);
+            return;
+        }
+        boolean secondMoved = false;
+        for(int secondTo : steps[second])
+            if(secondTo != firstTo){
+                secondMoved = true;
+                captures[to + (secondTo >>> 6)] |= 1L << secondTo;
+                or(captures, to, wins, Tablebase.subgame(doubles, firstTo, secondTo, nodes) * words);
+            }
+        if(!secondMoved)
+            or(captures, to, wins, Tablebase.subgame(doubles, firstTo, second, nodes) * words);
+    }
+
+    private void or(long[] target, int to, long[] source, int from){
+        for(int w = 0; w < words; w++)
+            target[to + w] |= source[from + w];
+    }
+
+    /**
+     * Works out the wins of the subgames with the first detective at a location
+     *
+     * @param captures the captures of this round
+     * @param wins the wins to fill
+     * @param first the location of the first detective
+     */
+    private void wins(long[] captures, long[] wins, int first){
+        long[] occupied = NodeBits.create(graph.maxNode());
+        long[] singles = NodeBits.create(graph.maxNode());
+        long[] doubles = NodeBits.create(graph.maxNode());
+        for(int d = 0; d < Tablebase.DOUBLES; d++)
+            for(int i = 0; i < graph.size(); i++){
+                int second = graph.node(i);
+                NodeBits.clear(occupied);
+                NodeBits.add(occupied, first);
+                NodeBits.add(occupied, second);
+                int to = Tablebase.subgame(d, first, second, nodes) * words;
+                int doublesTo = d == 0 ? -1 : Tablebase.subgame(d - 1, first, second, nodes) * words;
+
+                for(int j = 0; j < graph.size(); j++){
+                    int mrX = graph.node(j);
+                    if(mrX == first || mrX == second)
+                        continue;
+                    reach.oneStep(mrX, ReachBits.ANY, singles);
+                    NodeBits.andNot(singles, occupied);
+                    if(!within(singles, captures, to))
+                        continue;
+                    if(doublesTo >= 0){
+                        reach.twoSteps(mrX, ReachBits.ANY, ReachBits.ANY, occupied, doubles);
+                        if(!within(doubles, captures, doublesTo))
+                            continue;
+                    }
+                    wins[to + (mrX >>> 6)] |= 1L << mrX;
+                }
+            }
+    }
+
+    // True if every node of set is in the set of words() words at offset from.
+    private boolean within(long[] set, long[] sets, int from){
+        for(int w = 0; w < words; w++)
+            if((set[w] & ~sets[from + w]) != 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Writes the tablebase file
+     *
+     * @param file the tablebase file
+     * @param wins the wins of each round, see build
+     * @return the number of entries
+     * @throws IOException if the file can't be written
+     */
+    int write(File file, List<long[]> wins) throws IOException{
+        long[] last = wins.get(wins.size() - 1);
+        int[] offsets = new int[Tablebase.DOUBLES * nodes * nodes + 1];
+        short[] entries = new short[Math.toIntExact(Arrays.stream(last).map(Long::bitCount).sum())];
+        int size = 0;
+        for(int subgame = 0; subgame + 1 < offsets.length; subgame++){
+            offsets[subgame] = size;
+            for(int mrX = 0; mrX < nodes; mrX++){
+                int word = subgame * words + (mrX >>> 6);
+                if((last[word] & 1L << mrX) == 0)
+                    continue;
+                int rounds = 1;
+                while((wins.get(rounds - 1)[word] & 1L << mrX) == 0)
+                    rounds++;
+                entries[size++] = Tablebase.entry(mrX, rounds);
+            }
+        }
+        offsets[offsets.length - 1] = size;
+        Tablebase.write(file, graph.fingerprint(), nodes, wins.size(), offsets, entries, distances());
+        return size;
+    }
+
+    // The distances between nodes along the detectives' edges by breadth first search, 255 if further or unreached.
+    private byte[] distances(){
+        byte[] distances = new byte[nodes * nodes];
+        Arrays.fill(distances, (byte) 255);
+        int[] distance = new int[nodes];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for(int i = 0; i < graph.size(); i++){
+            int from = graph.node(i);
+            Arrays.fill(distance, -1);
+            distance[from] = 0;
+            queue.add(from);
+            while(!queue.isEmpty()){
+                int node = queue.poll();
+                distances[from * nodes + node] = (byte) Integer.min(255, distance[node]);
+                for(int next : steps[node])
+                    if(distance[next] < 0){
+                        distance[next] = distance[node] + 1;
+                        queue.add(next);
+                    }
+            }
+        }
+        return distances;
+    }
+}
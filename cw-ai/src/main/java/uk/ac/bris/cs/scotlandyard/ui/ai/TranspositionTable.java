@@ -0,0 +1,139 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+// Class that stores search results by Zobrist hash, shared by all search threads without locking.
+// Each entry is a check word and two data words. The check word is the key XORed with both data words, so an entry
+// torn by two threads writing at once fails the check on read and counts as a miss.
+class TranspositionTable{
+
+    // Bound types of a stored score.
+    static final int EXACT = 0, LOWER = 1, UPPER = 2;
+
+    private final int mask;
+    private final long[] checks;
+    private final long[] scores;
+    private final long[] infos;
+    private volatile int age = 0;
+
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), stores = new LongAdder();
+
+    /**
+     * Main constructor for TranspositionTable
+     *
+     * @param bits the table holds 2^bits entries, 24 bytes each
+     */
+    TranspositionTable(int bits){
+        if(bits < 1 || bits > 30)
+            throw new IllegalArgumentException("Table bits must be between 1 and 30");
+        mask = (1 << bits) - 1;
+        checks = new long[1 << bits];
+        scores = new long[1 << bits];
+        infos = new long[1 << bits];
+    }
+
+    // One probed entry, filled in by probe. Each thread keeps its own.
+    static final class Entry{
+        double score;
+        int depth, bound, move;
+    }
+
+    /**
+     * Starts a new search. Entries of older searches are replaced first, whatever their depth
+     */
+    void newSearch(){
+        // Ages run from 1 to 255, so an empty entry never looks current.
+        age = age % 255 + 1;
+    }
+
+    /**
+     * Removes every entry, so that the next searches don't depend on the earlier ones. Must not be called while the
+     * table is being searched
+     */
+    void clear(){
+        Arrays.fill(checks, 0);
+        Arrays.fill(scores, 0);
+        Arrays.fill(infos, 0);
+    }
+
+    /**
+     * Looks up a state
+     *
+     * @param key the Zobrist hash of the state
+     * @param entry filled with the stored result if found; not null
+     * @return true if the state is stored
+     */
+    boolean probe(long key, Entry entry){
+        int i = (int) key & mask;
+        long score = scores[i], info = infos[i];
+        if((checks[i] ^ score ^ info) != key){
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        entry.score = Double.longBitsToDouble(score);
+        entry.move = (int) info;
+        entry.depth = (int) (info >>> 32) & 0xFF;
+        entry.bound = (int) (info >>> 40) & 0x3;
+        return true;
+    }
+
+    /**
+     * Stores a search result. A deeper entry of the current search is kept instead
+     *
+     * @param key the Zobrist hash of the state
+     * @param depth the remaining depth the state was searched to
+     * @param bound EXACT, LOWER or UPPER
+     * @param score the score
+     * @param move the best packed move, or PackedMove.NONE
+     */
+    void store(long key, int depth, int bound, double score, int move){
+        int i = (int) key & mask;
+        long old = infos[i];
+        if((int) (old >>> 48) == age && ((int) (old >>> 32) & 0xFF) > depth)
+            return;
+
+        long info = (move & 0xFFFFFFFFL) | ((long) (depth & 0xFF) << 32) | ((long) bound << 40) | ((long) age << 48);
+        long s = Double.doubleToLongBits(score);
+        scores[i] = s;
+        infos[i] = info;
+        checks[i] = key ^ s ^ info;
+        stores.increment();
+    }
+
+    long hits(){
+        return hits.sum();
+    }
+
+    long misses(){
+        return misses.sum();
+    }
+
+    long stores(){
+        return stores.sum();
+    }
+
+    /**
+     * @return the share of probes that found their state, between 0 and 1
+     */
+    double hitRate(){
+        long h = hits(), total = h + misses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Resets the counters, not the entries
+     */
+    void resetCounters(){
+        hits.reset();
+        misses.reset();
+        stores.reset();
+    }
+
+    @Override
+    public String toString(){
+        return "TranspositionTable{entries=" + (mask + 1) + ", hits=" + hits() + ", misses=" + misses()
+                + ", stores=" + stores() + "}";
+    }
+}
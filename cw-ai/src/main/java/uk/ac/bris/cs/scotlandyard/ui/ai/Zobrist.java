@@ -0,0 +1,61 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+import java.util.SplittableRandom;
+
+// Class that holds the random keys for Zobrist hashing of a GameState. A state's hash is the XOR of the keys of its
+// round, current player, player locations and ticket counts. Keys come from a fixed seed, so two states with the same
+// number of players and map size hash alike, across models and across moves.
+final class Zobrist{
+
+    private static final long SEED = 0x5C07_1A4D_9E37_79B9L;
+    private static final int TICKET_TYPES = Ticket.values().length;
+    // Ticket counts and rounds are keyed modulo these sizes.
+    private static final int COUNTS = 256, ROUNDS = 256;
+
+    private final int nodes;
+    private final long[] locations;
+    private final long[] tickets;
+    private final long[] rounds = new long[ROUNDS];
+    private final long[] currents;
+
+    /**
+     * Main constructor for Zobrist
+     *
+     * @param players the number of players
+     * @param maxNode the largest node on the map
+     */
+    Zobrist(int players, int maxNode){
+        SplittableRandom random = new SplittableRandom(SEED);
+        nodes = maxNode + 1;
+        locations = new long[players * nodes];
+        tickets = new long[players * TICKET_TYPES * COUNTS];
+        currents = new long[players];
+        fill(random, locations);
+        fill(random, tickets);
+        fill(random, rounds);
+        fill(random, currents);
+    }
+
+    private static void fill(SplittableRandom random, long[] keys){
+        for(int i = 0; i < keys.length; i++)
+            keys[i] = random.nextLong();
+    }
+
+    long location(int player, int node){
+        return locations[player * nodes + node];
+    }
+
+    long tickets(int player, int ticket, int count){
+        return tickets[(player * TICKET_TYPES + ticket) * COUNTS + (count & (COUNTS - 1))];
+    }
+
+    long round(int round){
+        return rounds[round & (ROUNDS - 1)];
+    }
+
+    long current(int player){
+        return currents[player];
+    }
+}
@@ -1,9 +1,16 @@
 package uk.ac.bris.cs.scotlandyard.ui.ai;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
-import javafx.util.Pair;
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.NodeBits;
+import uk.ac.bris.cs.gamekit.graph.ReachBits;
 import uk.ac.bris.cs.scotlandyard.ai.ManagedAI;
 import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
 import uk.ac.bris.cs.scotlandyard.model.*;
@@ -11,168 +18,218 @@ import uk.ac.bris.cs.scotlandyard.model.*;
 @ManagedAI("Mr. dropTable$420")
 public class dropTable$420 implements PlayerFactory {
 
-	private static final boolean generateFile = false;
-	private static final int maxDepth = 2;
+	// Numbers the factories, to tell their search statistics apart.
+	private static final AtomicInteger FACTORIES = new AtomicInteger();
+	private final int id = FACTORIES.incrementAndGet();
 
 	private Cache cache = null;
+	private CompiledGraph<Transport> graph = null;
+	// Built once per game and shared by its models, see model.
+	private ReachBits reach = null;
+	private MoveGenerator generator = null;
+	private Zobrist zobrist = null;
+	private RootSearch search = null;
+	private OpeningBook book = null;
+	// Chooses the detectives' moves, as the search expects them to be made.
+	private Search detectives = null;
+	// The nodes mr.X could be at, as the detectives see the game.
+	private MrXBelief belief = null;
+
+	// Pondering: the thread it runs on, the ponder running on it and mr.X's location after his last move, or -1
+	// before his first.
+	private ExecutorService ponderer = null;
+	private Future<?> pondering = null;
+	private int mrXLocation = -1;
 
-	/**
-	 * Computes a floating point score for a game configuration stored in a model object using multiple scores
-	 *
-	 * @param model the model to be scored; not null
-	 * @return the score for the given game model
-	 */
-	private double scoreModel(ScotlandYardAIModel model){
-		if(model == null)
-			throw new NullPointerException("Model is null");
-
-		double availableMoveScore, distanceScoreAvg, distanceScoreMin;
-
-		// Valid moves scoreModel
-		// Normalized to a maximum of 100. 364 is the maximum from the valid moves table.
-		// Cached scoring: ; availableMoveScore =  ((double) cache.getValidMoves(model.getCurrentPlayer().location(), model.getCurrentPlayer().tickets())) / 364 * 100;
-		availableMoveScore = (double) model.getValidMovesForPlayer(model.getCurrentPlayer()).size() / 364 * 100;
-
-		// Distance calculations
-		List<ScotlandYardAIPlayer> playerList = new LinkedList<>(model.getPlayers());
-		playerList.remove(0);
-
-		double minDistance = 1000, avgDistance = 0;
-		for(ScotlandYardAIPlayer p : playerList){
-			minDistance = Double.min(minDistance, cache.getDistance(p.location(), model.getPlayers().get(0).location(), p.tickets()));
-			avgDistance += cache.getDistance(p.location(), model.getPlayers().get(0).location(), p.tickets());
+	@Override
+	// Called at the beginning of the game, used to generate or load needed data.
+	public List<Spectator> createSpectators(ScotlandYardView view){
+		// A factory reused without finishing its last game gives that game's resources back first.
+		finish();
+		graph = CompiledGraph.compile(view.getGraph(), Transport.class);
+		reach = new ReachBits(graph);
+		generator = new MoveGenerator(graph);
+		zobrist = new Zobrist(view.getPlayers().size(), graph.maxNode());
+		cache = SharedCache.acquire(model(view, -1));
+		Tablebase tablebase = SearchConfig.tablebase() ? Tablebase.find(graph.fingerprint()) : null;
+		search = new RootSearch(cache, tablebase, SearchConfig.maxDepth(), SearchConfig.threads(),
+				SearchConfig.deterministic(), SearchConfig.tableBits());
+		if(SearchConfig.jmx())
+			search.stats().register("dropTable$420-" + id);
+		book = SearchConfig.book() ? OpeningBook.find(graph.fingerprint()) : null;
+		detectives = new Search(cache, null, null, 0);
+		belief = new MrXBelief(view, graph);
+
+		// Pondering depends on how long the detectives take, so a deterministic search doesn't ponder.
+		List<Spectator> spectators = new ArrayList<>();
+		spectators.add(belief);
+		if(SearchConfig.ponder() && !SearchConfig.deterministic()){
+			ponderer = Executors.newSingleThreadExecutor(task -> {
+				Thread thread = new Thread(task, "dropTable$420 ponder");
+				thread.setDaemon(true);
+				return thread;
+			});
+			spectators.add(new Ponderer());
 		}
-		avgDistance /= playerList.size();
-		//
+		return spectators;
+	}
 
-		// Normalized to 100, the maximum distance in the table is 16.
-		distanceScoreAvg = avgDistance / 16 * 100;
-		distanceScoreMin = 800 / (minDistance + 1);
+	@Override
+	// Called when the game is over, stops the search threads and gives back the cache.
+	public void finish(){
+		stopPondering();
+		if(ponderer != null)
+			ponderer.shutdown();
+		if(search != null){
+			if(SearchConfig.printStats())
+				System.out.println(search.table());
+			search.stats().unregister();
+			search.shutdown();
+		}
+		if(cache != null)
+			SharedCache.release(cache);
+		ponderer = null;
+		detectives = null;
+		belief = null;
+		mrXLocation = -1;
+		search = null;
+		cache = null;
+		reach = null;
+		generator = null;
+		zobrist = null;
+		book = null;
+	}
 
-		return availableMoveScore * 20 + distanceScoreAvg * 10 - distanceScoreMin * 70;
+	@Override
+	public Player createPlayer(Colour colour) {
+		return new MyPlayer();
 	}
 
 	/**
-	 * Chooses the best move when looking ahead one step from a given model
+	 * Makes a model of the game on the game's thread. The models share the game's move generator, so pondering must
+	 * be stopped before one is made, as the ponder thread generates moves from its own model
 	 *
-	 * @param node the game model
-	 * @return a pair of model score and selected move
+	 * @param view the game
+	 * @param location mr.X's location, or -1 for where the view says he is
+	 * @return the model
 	 */
-	private Pair<Double, Move> chooseMove(ScotlandYardAIModel node){
-		double maxScore = -100000.0, currentScore;
-		Move bestMove = null;
-		ScotlandYardAIModel model;
-
-		// Tries all moves, selects one with biggest score.
-		for(Move m : node.getValidMovesForPlayer(node.getCurrentPlayer())){
-			model = new ScotlandYardAIModel(node);
-			m.visit(model.getCurrentPlayer());
-			currentScore = scoreModel(model);
-			m.visit(model);
-			if(currentScore > maxScore){
-				maxScore = currentScore;
-				bestMove = m;
-			}
-		}
-
-		return new Pair<>(maxScore, bestMove);
+	private ScotlandYardAIModel model(ScotlandYardView view, int location){
+		return new ScotlandYardAIModel(view, graph, reach, generator, zobrist, location);
 	}
 
 	/**
-	 * MinMax algorithm for finding best move at a given depth. Uses Alpha-Beta pruning.
+	 * Guesses where mr.X is for the detective to move: of the nodes he could be at, the one it reaches in the fewest
+	 * moves with its tickets, ties going to the smaller node. Nodes it can't reach are only guessed if it reaches none
 	 *
-	 * @param node current game model
-	 * @param depth current search depth
-	 * @param maximizer true is it's mr.X's turn to make a move
-	 * @param alpha alpha variable for pruning
-	 * @param beta beta variable for pruning
-	 * @return a pair of model score and selected move
+	 * @param view the game, with a detective to move
+	 * @return the node, or -1 for where the view says he is if he could be nowhere
 	 */
-	private Pair<Double, Move> minMax(ScotlandYardAIModel node, int depth, boolean maximizer, double alpha, double beta){
-		Pair<Double, Move> value, bestValue;
-
-		// If the maximum depth is reached, end recursion.
-		if(depth == maxDepth)
-			return chooseMove(node);
-
-		// If it's mr.X's turn.
-		if(maximizer){
-			bestValue = new Pair<>(-100000.0, null);
-			ScotlandYardAIModel model;
-
-			// Iterate through all valid moves, calling minMax on all of them.
-			for(Move m : node.getValidMovesForPlayer(node.getCurrentPlayer())){
-				model = new ScotlandYardAIModel(node);
-				m.visit(model.getCurrentPlayer());
-				m.visit(model);
-
-				value = minMax(model, depth, false, alpha, beta);
-				if(value.getKey() > bestValue.getKey() || bestValue.getValue() == null)
-					bestValue = new Pair<>(value.getKey(), m);
-
-				// Alpha-Beta pruning.
-				alpha = Double.max(alpha, bestValue.getKey());
-				if(beta <= alpha)
-					break;
+	private int nearestPossible(ScotlandYardView view){
+		GameState state = model(view, -1).state();
+		int location = state.location(state.current());
+		long tickets = state.tickets(state.current());
+		long[] possible = belief.possible();
+		int nearest = NodeBits.next(possible, 0), nearestDistance = Integer.MAX_VALUE;
+		for(int node = nearest; node >= 0; node = NodeBits.next(possible, node + 1)){
+			int distance = cache.getDistance(location, node, tickets);
+			if(distance > 0 && distance < nearestDistance){
+				nearest = node;
+				nearestDistance = distance;
 			}
-			return bestValue;
 		}
-		// If it's a detective's turn.
-		else{
-			bestValue = new Pair<>(100000.0, null);
-			ScotlandYardAIModel model;
-
-			// Chooses the detective's move's by looking ahead 1, for efficiency.
-			for(Move m : node.getValidMovesForPlayer(node.getCurrentPlayer())){
-				model = new ScotlandYardAIModel(node);
-				m.visit(model.getCurrentPlayer());
-
-				double score = scoreModel(model);
-				m.visit(model);
-
-				if(score < bestValue.getKey() || bestValue.getValue() == null)
-					bestValue = new Pair<>(score, m);
+		return nearest;
+	}
 
-				// Alpha-Beta pruning.
-				alpha = Double.min(alpha, bestValue.getKey());
-			}
+	/**
+	 * @return the statistics of the move being searched, or of the last one; null between games
+	 */
+	SearchStats stats(){
+		return search == null ? null : search.stats();
+	}
 
-			// Creates a new game model with the chosen move.
-			model = new ScotlandYardAIModel(node);
-			bestValue.getValue().visit(model.getCurrentPlayer());
-			bestValue.getValue().visit(model);
+	/**
+	 * Plays the detectives' expected moves up to mr.X's next turn, then ponders that position on the ponder thread
+	 * until stopPondering is called. Does nothing if pondering is off or the game is over by then
+	 *
+	 * @param model the game model, with a detective or mr.X to move; modified and handed to the ponder thread
+	 */
+	private void ponder(ScotlandYardAIModel model){
+		if(ponderer == null)
+			return;
+		while(model.getCurrentPlayerNumber() != GameState.MRX && !model.isMrXCaught())
+			model.applyMove(detectives.detectiveMove(model));
+		if(model.isMrXCaught() || model.state().round() >= model.state().rounds())
+			return;
+		search.allowPondering();
+		pondering = ponderer.submit(() -> search.ponder(model));
+	}
 
-			// Recurse further.
-			if(model.getCurrentPlayerNumber() == 0)
-				return  minMax(model, depth + 1, true, alpha, beta);
-			else return minMax(model, depth, false, alpha, beta);
+	// Stops the ponder running, if there is one, and waits for it to return.
+	private void stopPondering(){
+		if(pondering == null)
+			return;
+		search.stopPondering();
+		try{
+			pondering.get();
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException e){
+			throw new IllegalStateException("Pondering failed", e.getCause());
+		}
+		finally{
+			pondering = null;
 		}
 	}
 
-	@Override
-	// Called at the beginning of the game, used to generate or load needed data.
-	public List<Spectator> createSpectators(ScotlandYardView view){
-		ScotlandYardAIModel model = new ScotlandYardAIModel(view, -1);
-		if(generateFile){
-			cache = new Cache(model);
-			cache.writeToFile();
+	// Spectator that ponders again after every detective's move, from the position it leaves.
+	private class Ponderer implements Spectator {
+		@Override
+		public void onMoveMade(ScotlandYardView view, Move move){
+			// Mr.X's own moves are pondered from makeMove, which knows where he went.
+			if(move.colour().isMrX() || mrXLocation == -1)
+				return;
+			stopPondering();
+			ponder(model(view, mrXLocation));
 		}
-		else cache = new Cache();
-
-		return new ArrayList<>();
-	}
 
-	@Override
-	public Player createPlayer(Colour colour) {
-		return new MyPlayer();
+		@Override
+		public void onGameOver(ScotlandYardView view, Set<Colour> winningPlayers){
+			stopPondering();
+		}
 	}
 
 	private class MyPlayer implements Player {
 		@Override
 		public void makeMove(ScotlandYardView view, int location, Set<Move> moves, Consumer<Move> callback) {
-			// Initial call to minMax, then we accept selected move.
-			Pair<Double, Move> m = minMax(new ScotlandYardAIModel(view, location), 0, true, -100000.0, 100000.0);
-			callback.accept(m.getValue());
+			stopPondering();
+
+			// The detectives don't know where mr.X is, each plays the move the search expects of it against the node
+			// he could be at that it's nearest to.
+			if(view.getCurrentPlayer().isDetective()){
+				ScotlandYardAIModel model = model(view, nearestPossible(view));
+				callback.accept(model.toMove(model.getCurrentPlayerNumber(), detectives.detectiveMove(model)));
+				return;
+			}
+
+			// Plays the book's move if it has one, otherwise searches from the current position until the move time is
+			// used up, then we accept selected move. The search keeps what pondering left in its table.
+			long deadline = System.nanoTime() + SearchConfig.moveTime() * 1000000;
+			ScotlandYardAIModel model = model(view, location);
+			int move = book == null ? PackedMove.NONE : book.probe(model);
+			if(move == PackedMove.NONE){
+				move = search.search(model, deadline);
+				if(SearchConfig.printStats())
+					System.out.println(search.stats());
+			}
+			Move chosen = model.toMove(model.getCurrentPlayerNumber(), move);
+
+			// Pondering starts before the move is accepted, as the detectives may move before accept returns.
+			mrXLocation = move == PackedMove.PASS ? location : PackedMove.finalDestination(move);
+			model.applyMove(move);
+			ponder(model);
+			callback.accept(chosen);
 		}
 	}
 }
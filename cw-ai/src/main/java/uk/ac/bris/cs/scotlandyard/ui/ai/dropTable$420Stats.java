@@ -0,0 +1,54 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javafx.application.Platform;
+import javafx.scene.control.Label;
+import uk.ac.bris.cs.scotlandyard.ai.ManagedAI;
+import uk.ac.bris.cs.scotlandyard.ai.ResourceProvider;
+import uk.ac.bris.cs.scotlandyard.ai.Visualiser;
+
+// The same AI, with the statistics of the move being searched shown live in a tool window. The statistics are
+// sampled twice a second, so the search doesn't wait on the UI.
+@ManagedAI(value = "Mr. dropTable$420 (live stats)", visualiserType = ManagedAI.VisualiserType.WINDOWED)
+public class dropTable$420Stats extends dropTable$420 {
+
+	private static final long SAMPLE_MILLIS = 500;
+
+	private ScheduledExecutorService sampler = null;
+
+	@Override
+	// Called once the game's window is up, starts showing the statistics.
+	public void ready(Visualiser visualiser, ResourceProvider provider){
+		SearchStats stats = stats();
+		if(stats == null)
+			return;
+		Label label = new Label("Waiting for mr.X's first move");
+		label.setStyle("-fx-font-family: monospace; -fx-padding: 8;");
+		Platform.runLater(() -> visualiser.surface().getChildren().add(label));
+
+		sampler = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "dropTable$420 stats");
+			thread.setDaemon(true);
+			return thread;
+		});
+		sampler.scheduleAtFixedRate(() -> {
+			// Nothing to show until the first move is searched, a book move isn't.
+			if(stats.getMoveMillis() == 0)
+				return;
+			String text = stats.toString();
+			Platform.runLater(() -> label.setText(text));
+		}, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	// Called when the game is over, stops sampling, then finishes as the AI does.
+	public void finish(){
+		if(sampler != null)
+			sampler.shutdownNow();
+		sampler = null;
+		super.finish();
+	}
+}
@@ -0,0 +1,103 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link Cache}
+ */
+public class CacheTest {
+
+	// Offsets in the header of a cache file.
+	private static final int VERSION = 4, DIMENSIONS = 8, CHECKSUM = 52, DISTANCE_SIZE = 60, TABLES = 64;
+
+	// Computing the tables takes a while, so all tests share them.
+	private static Cache cache;
+	private static byte[] written;
+
+	@BeforeClass
+	public static void compute() throws IOException {
+		cache = new Cache(TestModels.standardModel(45, 26, 29, 50, 53, 91));
+		File file = File.createTempFile("cache", ".dat");
+		file.deleteOnExit();
+		cache.write(file);
+		written = Files.readAllBytes(file.toPath());
+	}
+
+	private static File file(byte[] bytes) throws IOException {
+		File file = File.createTempFile("cache", ".dat");
+		file.deleteOnExit();
+		Files.write(file.toPath(), bytes);
+		return file;
+	}
+
+	// The written file with one bit of a byte flipped.
+	private static byte[] flipped(int offset) {
+		byte[] bytes = written.clone();
+		bytes[offset] ^= 1;
+		return bytes;
+	}
+
+	private static void assertRejected(byte[] bytes, String message) {
+		assertThatThrownBy(() -> Cache.load(file(bytes), cache.fingerprint())).isInstanceOf(IOException.class)
+				.hasMessageContaining(message);
+	}
+
+	@Test
+	public void testLoadReturnsWhatWasWritten() throws IOException {
+		Cache loaded = Cache.load(file(written), cache.fingerprint());
+		assertThat(loaded.fingerprint()).isEqualTo(cache.fingerprint());
+
+		Random random = new Random(0);
+		for (int i = 0; i < 10000; i++) {
+			int from = 1 + random.nextInt(Cache.NODES - 1), to = 1 + random.nextInt(Cache.NODES - 1);
+			long tickets = GameState.pack(random.nextInt(Cache.TAXI + 2), random.nextInt(Cache.BUS + 2),
+					random.nextInt(Cache.UNDERGROUND + 2), random.nextInt(3), random.nextInt(6));
+			assertThat(loaded.getDistance(from, to, tickets)).isEqualTo(cache.getDistance(from, to, tickets));
+			int configuration = cache.moveConfiguration(tickets);
+			assertThat(loaded.moveConfiguration(tickets)).isEqualTo(configuration);
+			assertThat(loaded.getValidMoves(from, configuration))
+					.isEqualTo(cache.getValidMoves(from, configuration));
+		}
+	}
+
+	@Test
+	public void testMissingOrShortFileIsRejected() {
+		assertThatThrownBy(() -> Cache.load(new File("no such cache.dat"), cache.fingerprint()))
+				.isInstanceOf(IOException.class).hasMessageContaining("does not exist");
+		assertRejected(Arrays.copyOf(written, TABLES - 1), "is not a cache file");
+	}
+
+	@Test
+	public void testHeaderMismatchIsRejected() {
+		assertRejected(flipped(0), "is not a cache file");
+		assertRejected(flipped(VERSION + 3), "was written by another version");
+		assertRejected(flipped(DIMENSIONS + 3), "has tables of another size");
+		assertThatThrownBy(() -> Cache.load(file(written), cache.fingerprint() ^ 1))
+				.isInstanceOf(IOException.class).hasMessageContaining("was computed on another map");
+	}
+
+	@Test
+	public void testWrongSizeIsRejected() {
+		assertRejected(Arrays.copyOf(written, written.length - 2), "has the wrong size");
+		assertRejected(Arrays.copyOf(written, written.length + 2), "has the wrong size");
+		assertRejected(flipped(DISTANCE_SIZE + 3), "has the wrong size");
+	}
+
+	@Test
+	public void testCorruptTablesAreRejected() {
+		assertRejected(flipped(TABLES + 100), "is corrupt");
+		assertRejected(flipped(written.length - 1), "is corrupt");
+		assertRejected(flipped(CHECKSUM + 7), "is corrupt");
+	}
+
+}
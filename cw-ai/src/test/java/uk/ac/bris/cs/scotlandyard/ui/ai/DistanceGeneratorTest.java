@@ -0,0 +1,119 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Random;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader.fromLines;
+
+/**
+ * Tests for {@link DistanceGenerator}
+ */
+public class DistanceGeneratorTest {
+
+	private static final int PAIRS = Cache.NODES * Cache.NODES;
+
+	private static int index(int from, int to, int taxi, int bus, int underground) {
+		return ((taxi * Cache.BUS + bus) * Cache.UNDERGROUND + underground) * PAIRS + from * Cache.NODES + to;
+	}
+
+	// The shortest distances from a node with some tickets to every node, by a Breadth First Search over
+	// (node, tickets left) states; -1 where a node can't be reached.
+	private static int[] bruteForce(CompiledGraph<Transport> graph, int from, int taxi, int bus, int underground) {
+		int[] distances = new int[graph.maxNode() + 1];
+		Arrays.fill(distances, -1);
+		boolean[][][][] seen = new boolean[graph.maxNode() + 1][taxi + 1][bus + 1][underground + 1];
+		Deque<int[]> queue = new ArrayDeque<>();
+		queue.add(new int[] { from, taxi, bus, underground, 0 });
+		seen[from][taxi][bus][underground] = true;
+		while (!queue.isEmpty()) {
+			int[] state = queue.poll();
+			if (distances[state[0]] < 0) distances[state[0]] = state[4];
+			for (int e = graph.firstEdge(state[0]); e < graph.endEdge(state[0]); e++) {
+				Transport transport = graph.data(e);
+				int ticket = transport == Transport.TAXI ? 1
+						: transport == Transport.BUS ? 2
+						: transport == Transport.UNDERGROUND ? 3
+						: -1;
+				if (ticket < 0 || state[ticket] == 0) continue;
+				int[] next = state.clone();
+				next[0] = graph.target(e);
+				next[ticket]--;
+				next[4]++;
+				if (!seen[next[0]][next[1]][next[2]][next[3]]) {
+					seen[next[0]][next[1]][next[2]][next[3]] = true;
+					queue.add(next);
+				}
+			}
+		}
+		return distances;
+	}
+
+	@Test
+	public void testSmallGraphMatchesBruteForce() {
+		// A ring of taxis with bus and underground shortcuts, a ferry, and node 12 on its own.
+		CompiledGraph<Transport> graph = CompiledGraph.compile(
+				fromLines(asList("12 14", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12",
+						"1 2 Taxi", "2 3 Taxi", "3 4 Taxi", "4 5 Taxi", "5 6 Taxi", "6 7 Taxi", "7 8 Taxi",
+						"8 9 Taxi", "9 10 Taxi", "10 1 Taxi", "1 4 Bus", "4 8 Bus", "2 7 Underground",
+						"5 11 Ferry")),
+				Transport.class);
+		byte[] table = DistanceGenerator.generate(graph);
+		assertThat(table.length).isEqualTo(Cache.TAXI * Cache.BUS * Cache.UNDERGROUND * PAIRS);
+
+		for (int from = 1; from <= graph.maxNode(); from++)
+			for (int taxi = 0; taxi < Cache.TAXI; taxi++)
+				for (int bus = 0; bus < Cache.BUS; bus++)
+					for (int underground = 0; underground < Cache.UNDERGROUND; underground++) {
+						int[] expected = bruteForce(graph, from, taxi, bus, underground);
+						for (int to = 0; to < Cache.NODES; to++) {
+							int distance = to < expected.length ? Integer.max(0, expected[to]) : 0;
+							int actual = table[index(from, to, taxi, bus, underground)];
+							if (actual != distance)
+								assertThat(actual).as("%d to %d with %d, %d, %d", from, to, taxi, bus,
+										underground).isEqualTo(distance);
+						}
+					}
+
+		// Nodes that aren't on the map reach nothing.
+		for (int to = 0; to < Cache.NODES; to++)
+			assertThat(table[index(0, to, Cache.TAXI - 1, Cache.BUS - 1, Cache.UNDERGROUND - 1)]).isEqualTo((byte) 0);
+	}
+
+	@Test
+	public void testStandardGraphMatchesOnDemandDistances() throws IOException {
+		CompiledGraph<Transport> graph = CompiledGraph.compile(StandardGame.standardGraph(), Transport.class);
+		byte[] table = DistanceGenerator.generate(graph);
+		OnDemandDistances distances = new OnDemandDistances(graph, 1 << 16);
+		Random random = new Random(2);
+		for (int i = 0; i < 20000; i++) {
+			int from = 1 + random.nextInt(graph.maxNode());
+			int to = 1 + random.nextInt(graph.maxNode());
+			int taxi = random.nextInt(Cache.TAXI);
+			int bus = random.nextInt(Cache.BUS);
+			int underground = random.nextInt(Cache.UNDERGROUND);
+			assertThat((int) table[index(from, to, taxi, bus, underground)])
+					.as("%d to %d with %d, %d, %d", from, to, taxi, bus, underground)
+					.isEqualTo(distances.distance(from, to, taxi, bus, underground));
+		}
+	}
+
+	@Test
+	public void testMapWithTooManyNodesIsRejected() {
+		CompiledGraph<Transport> graph = CompiledGraph.compile(
+				fromLines(asList("1 0", String.valueOf(Cache.NODES))), Transport.class);
+		assertThatThrownBy(() -> DistanceGenerator.generate(graph)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
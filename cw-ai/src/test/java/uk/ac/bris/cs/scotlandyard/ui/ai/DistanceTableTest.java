@@ -0,0 +1,102 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link DistanceTable}
+ */
+public class DistanceTableTest {
+
+	private static final int PAIRS = Cache.NODES * Cache.NODES;
+
+	// Generating the table takes a while, so all tests share it.
+	private static byte[] raw;
+	private static DistanceTable table;
+
+	@BeforeClass
+	public static void generate() throws IOException {
+		raw = DistanceGenerator.generate(
+				CompiledGraph.compile(StandardGame.standardGraph(), Transport.class));
+		table = DistanceTable.compress(raw);
+	}
+
+	// The distance in the full table, with the counts clamped as DistanceTable.distance does.
+	private static int expected(int from, int to, int taxi, int bus, int underground) {
+		taxi = Integer.min(taxi, Cache.TAXI - 1);
+		bus = Integer.min(bus, Cache.BUS - 1);
+		underground = Integer.min(underground, Cache.UNDERGROUND - 1);
+		int configuration = (taxi * Cache.BUS + bus) * Cache.UNDERGROUND + underground;
+		return raw[configuration * PAIRS + from * Cache.NODES + to];
+	}
+
+	// Checks every pair with every ticket configuration, and with counts two past each clamp.
+	private static void assertMatchesRaw(DistanceTable table) {
+		for (int from = 0; from < Cache.NODES; from++)
+			for (int to = 0; to < Cache.NODES; to++)
+				for (int taxi = 0; taxi < Cache.TAXI + 2; taxi++)
+					for (int bus = 0; bus < Cache.BUS + 2; bus++)
+						for (int underground = 0; underground < Cache.UNDERGROUND + 2; underground++) {
+							int actual = table.distance(from, to, taxi, bus, underground);
+							if (actual != expected(from, to, taxi, bus, underground))
+								assertThat(actual).as("%d to %d with %d, %d, %d", from, to, taxi, bus,
+										underground).isEqualTo(expected(from, to, taxi, bus, underground));
+						}
+	}
+
+	@Test
+	public void testDistanceMatchesFullTable() {
+		assertMatchesRaw(table);
+	}
+
+	@Test
+	public void testCompressedTableIsSmall() {
+		assertThat(DistanceTable.bytes(table.size())).isEqualTo(table.bytes());
+		assertThat(table.bytes()).isLessThan(raw.length / 10);
+	}
+
+	@Test
+	public void testReadReturnsWhatWasWritten() {
+		ByteBuffer buffer = ByteBuffer.allocate(table.bytes() + 3);
+		buffer.position(3);
+		table.write(buffer);
+		assertThat(buffer.remaining()).isEqualTo(0);
+
+		buffer.position(3);
+		DistanceTable read = DistanceTable.read(buffer, table.size());
+		assertThat(buffer.remaining()).isEqualTo(0);
+		assertThat(read.size()).isEqualTo(table.size());
+		assertMatchesRaw(read);
+	}
+
+	@Test
+	public void testTableWithLongerDistancesForMoreTicketsCompressesExactly() {
+		// A distance that grows with more tickets is never generated, so it's kept as an exception.
+		byte[] odd = raw.clone();
+		int configuration = ((Cache.TAXI - 1) * Cache.BUS + 2) * Cache.UNDERGROUND + 1;
+		int pair = 1 * Cache.NODES + 2;
+		odd[configuration * PAIRS + pair] = 30;
+		DistanceTable compressed = DistanceTable.compress(odd);
+		assertThat(compressed.distance(1, 2, Cache.TAXI - 1, 2, 1)).isEqualTo(30);
+		assertThat(compressed.distance(1, 2, Cache.TAXI + 5, 2, 1)).isEqualTo(30);
+		assertThat(compressed.distance(1, 2, Cache.TAXI - 2, 2, 1)).isEqualTo(raw[
+				(((Cache.TAXI - 2) * Cache.BUS + 2) * Cache.UNDERGROUND + 1) * PAIRS + pair]);
+	}
+
+	@Test
+	public void testTableOfWrongSizeIsRejected() {
+		assertThatThrownBy(() -> DistanceTable.compress(new byte[PAIRS]))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
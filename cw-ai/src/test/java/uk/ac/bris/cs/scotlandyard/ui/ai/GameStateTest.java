@@ -0,0 +1,158 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link GameState}
+ */
+public class GameStateTest {
+
+	private static final Colour[] COLOURS = { Colour.BLACK, Colour.BLUE, Colour.GREEN, Colour.RED,
+			Colour.WHITE, Colour.YELLOW };
+	private static final int ROUNDS = StandardGame.ROUNDS.size();
+
+	// Everything a move may change, to compare a state with after its moves are undone.
+	private static final class Snapshot {
+		final int[] locations;
+		final long[] tickets;
+		final int round, current;
+		final long hash;
+
+		Snapshot(GameState state) {
+			locations = new int[state.players()];
+			tickets = new long[state.players()];
+			for (int p = 0; p < state.players(); p++) {
+				locations[p] = state.location(p);
+				tickets[p] = state.tickets(p);
+			}
+			round = state.round();
+			current = state.current();
+			hash = state.hash();
+		}
+
+		// The same state built from scratch, with nothing to undo.
+		GameState rebuild(int maxNode) {
+			return new GameState(COLOURS, locations, tickets, round, current, ROUNDS, maxNode);
+		}
+	}
+
+	private static GameState standardStart(int seed, int maxNode) {
+		List<Integer> detectives = StandardGame.generateDetectiveLocations(seed, COLOURS.length - 1);
+		int[] locations = new int[COLOURS.length];
+		long[] tickets = new long[COLOURS.length];
+		locations[0] = StandardGame.generateMrXLocation(seed);
+		tickets[0] = pack(StandardGame.generateMrXTickets());
+		for (int p = 1; p < COLOURS.length; p++) {
+			locations[p] = detectives.get(p - 1);
+			tickets[p] = pack(StandardGame.generateDetectiveTickets());
+		}
+		return new GameState(COLOURS, locations, tickets, 0, 0, ROUNDS, maxNode);
+	}
+
+	private static long pack(Map<Ticket, Integer> tickets) {
+		return GameState.pack(tickets.get(Ticket.TAXI), tickets.get(Ticket.BUS),
+				tickets.get(Ticket.UNDERGROUND), tickets.get(Ticket.DOUBLE), tickets.get(Ticket.SECRET));
+	}
+
+	private static void assertSame(GameState state, Snapshot expected) {
+		Snapshot actual = new Snapshot(state);
+		assertThat(actual.locations).isEqualTo(expected.locations);
+		assertThat(actual.tickets).isEqualTo(expected.tickets);
+		assertThat(actual.round).isEqualTo(expected.round);
+		assertThat(actual.current).isEqualTo(expected.current);
+		assertThat(actual.hash).isEqualTo(expected.hash);
+		for (int p = 1; p < state.players(); p++)
+			assertThat(state.isOccupied(expected.locations[p])).isTrue();
+	}
+
+	// Plays a packed move as ScotlandYardAIModel.applyMove does.
+	private static void play(GameState state, int move) {
+		if (move == PackedMove.PASS) state.playPass();
+		else if (PackedMove.isDouble(move)) {
+			int second = PackedMove.second(move);
+			state.playDouble(PackedMove.ticket(move), PackedMove.destination(move),
+					PackedMove.ticket(second), PackedMove.destination(second));
+		} else state.playTicket(PackedMove.ticket(move), PackedMove.destination(move));
+	}
+
+	@Test
+	public void testRandomMovesKeepHashAndUndoRestoresState() throws IOException {
+		CompiledGraph<Transport> graph = CompiledGraph.compile(StandardGame.standardGraph(), Transport.class);
+		MoveGenerator generator = new MoveGenerator(graph);
+		MoveBuffer moves = new MoveBuffer();
+		int[] counts = new int[Ticket.values().length];
+		int singles = 0, doubles = 0, passes = 0, undos = 0;
+
+		for (int game = 0; game < 50; game++) {
+			Random random = new Random(game);
+			GameState state = standardStart(game, graph.maxNode());
+			Deque<Snapshot> before = new ArrayDeque<>();
+
+			for (int step = 0; step < 400; step++) {
+				// Undoes a third of the time, and always once the game is out of rounds.
+				if (!before.isEmpty() && (random.nextInt(3) == 0 || state.round() >= ROUNDS - 1)) {
+					state.undo();
+					assertSame(state, before.pop());
+					undos++;
+					continue;
+				}
+
+				GameState.unpack(state.tickets(state.current()), counts);
+				generator.generate(state.location(state.current()), counts, state.occupied(),
+						state.round() + 1 < ROUNDS, moves);
+				// Passes are rare in play, so some are played even when there are moves.
+				int move = random.nextInt(10) == 0 ? PackedMove.PASS : moves.get(random.nextInt(moves.size()));
+				if (move == PackedMove.PASS) passes++;
+				else if (PackedMove.isDouble(move)) doubles++;
+				else singles++;
+
+				before.push(new Snapshot(state));
+				play(state, move);
+				assertThat(state.depth()).isEqualTo(before.size());
+				assertThat(state.hash()).isEqualTo(new Snapshot(state).rebuild(graph.maxNode()).hash());
+			}
+
+			while (!before.isEmpty()) {
+				state.undo();
+				assertSame(state, before.pop());
+			}
+			assertThatThrownBy(state::undo).isInstanceOf(IllegalStateException.class);
+		}
+
+		assertThat(singles).isGreaterThan(0);
+		assertThat(doubles).isGreaterThan(0);
+		assertThat(passes).isGreaterThan(0);
+		assertThat(undos).isGreaterThan(0);
+	}
+
+	@Test
+	public void testCopyHasSameHashAndNothingToUndo() throws IOException {
+		CompiledGraph<Transport> graph = CompiledGraph.compile(StandardGame.standardGraph(), Transport.class);
+		GameState state = standardStart(1, graph.maxNode());
+		state.playTicket(Ticket.SECRET.ordinal(), graph.target(graph.firstEdge(state.location(GameState.MRX))));
+		GameState copy = new GameState(state);
+		assertSame(copy, new Snapshot(state));
+		assertThat(copy.depth()).isEqualTo(0);
+		assertThatThrownBy(copy::undo).isInstanceOf(IllegalStateException.class);
+	}
+
+}
@@ -0,0 +1,90 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader.fromLines;
+
+/**
+ * Tests for {@link OnDemandDistances}
+ */
+public class OnDemandDistancesTest {
+
+	private static CompiledGraph<Transport> standard;
+	// Generating the table takes a while, so all tests share it.
+	private static DistanceTable table;
+
+	@BeforeClass
+	public static void generate() throws IOException {
+		standard = CompiledGraph.compile(StandardGame.standardGraph(), Transport.class);
+		table = DistanceTable.compress(DistanceGenerator.generate(standard));
+	}
+
+	@Test
+	public void testMatchesDistanceTableOnSampledQueries() {
+		OnDemandDistances distances = new OnDemandDistances(standard, 1 << 16);
+		Random random = new Random(0);
+		for (int i = 0; i < 20000; i++) {
+			int from = 1 + random.nextInt(standard.maxNode());
+			int to = 1 + random.nextInt(standard.maxNode());
+			int taxi = random.nextInt(Cache.TAXI);
+			int bus = random.nextInt(Cache.BUS);
+			int underground = random.nextInt(Cache.UNDERGROUND);
+			assertThat(distances.distance(from, to, taxi, bus, underground))
+					.as("%d to %d with %d, %d, %d", from, to, taxi, bus, underground)
+					.isEqualTo(table.distance(from, to, taxi, bus, underground));
+		}
+	}
+
+	@Test
+	public void testUnreachablePairsAndFerriesAreZero() {
+		// 2 and 3 are joined directly by a ferry only, 5 by nothing.
+		CompiledGraph<Transport> graph = CompiledGraph.compile(
+				fromLines(asList("5 4", "1", "2", "3", "4", "5", "1 2 Taxi", "2 3 Ferry", "3 4 Bus",
+						"1 4 Underground")),
+				Transport.class);
+		OnDemandDistances distances = new OnDemandDistances(graph, 64);
+		assertThat(distances.distance(1, 2, 1, 0, 0)).isEqualTo(1);
+		assertThat(distances.distance(1, 2, 0, 5, 5)).isEqualTo(0);
+		assertThat(distances.distance(2, 3, 5, 0, 0)).isEqualTo(0);
+		assertThat(distances.distance(2, 3, 1, 1, 1)).isEqualTo(3);
+		assertThat(distances.distance(2, 4, 1, 0, 1)).isEqualTo(2);
+		assertThat(distances.distance(1, 5, 5, 5, 5)).isEqualTo(0);
+		assertThat(distances.distance(5, 1, 5, 5, 5)).isEqualTo(0);
+		assertThat(distances.distance(1, 1, 5, 5, 5)).isEqualTo(0);
+		// Nodes that aren't on the map.
+		assertThat(distances.distance(0, 1, 5, 5, 5)).isEqualTo(0);
+		assertThat(distances.distance(1, 9, 5, 5, 5)).isEqualTo(0);
+	}
+
+	@Test
+	public void testMemoForgetsPastItsSize() {
+		OnDemandDistances small = new OnDemandDistances(standard, 64);
+		Random random = new Random(1);
+		for (int i = 0; i < 2000; i++) {
+			int from = 1 + random.nextInt(standard.maxNode());
+			int to = 1 + random.nextInt(standard.maxNode());
+			assertThat(small.distance(from, to, 4, 3, 2)).isEqualTo(table.distance(from, to, 4, 3, 2));
+			assertThat(small.remembered()).isLessThanOrEqualTo(64);
+		}
+		assertThat(small.remembered()).isGreaterThan(0);
+
+		// A distance asked for again is remembered once, not twice.
+		OnDemandDistances large = new OnDemandDistances(standard, 1 << 16);
+		large.distance(1, 100, 4, 3, 2);
+		large.distance(1, 100, 4, 3, 2);
+		assertThat(large.remembered()).isEqualTo(1);
+		large.distance(1, 100, 4, 3, 1);
+		assertThat(large.remembered()).isEqualTo(2);
+	}
+
+}
@@ -0,0 +1,58 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link OpeningBook}
+ */
+public class OpeningBookTest {
+
+	private static long key(int mrX, int... detectives) {
+		return OpeningBook.key(TestModels.model(TestModels.smallGraph(), mrX, detectives).state());
+	}
+
+	// A book of one position and its move.
+	private static OpeningBook book(ScotlandYardAIModel model, int move) throws IOException {
+		long fingerprint = model.getCompiledGraph().fingerprint();
+		File file = File.createTempFile("book", ".dat");
+		file.deleteOnExit();
+		OpeningBook.write(file, fingerprint, 4, new long[] { OpeningBook.key(model.state()) }, new int[] { move });
+		return OpeningBook.load(file, fingerprint);
+	}
+
+	@Test
+	public void testKeyDoesNotDependOnDetectiveOrder() {
+		assertThat(key(1, 5, 8, 3)).isEqualTo(key(1, 3, 5, 8));
+		assertThat(key(1, 5, 8, 3)).isEqualTo(key(1, 8, 3, 5));
+		assertThat(key(1, 5, 8, 3)).isNotEqualTo(key(1, 5, 8, 9));
+		assertThat(key(1, 5, 8, 3)).isNotEqualTo(key(2, 5, 8, 3));
+	}
+
+	@Test
+	public void testProbeReturnsBookMove() throws IOException {
+		ScotlandYardAIModel model = TestModels.model(TestModels.smallGraph(), 1, 5);
+		int move = PackedMove.single(Ticket.BUS.ordinal(), 4);
+		assertThat(book(model, move).probe(model)).isEqualTo(move);
+		// The position of another game isn't in the book.
+		assertThat(book(model, move).probe(TestModels.model(TestModels.smallGraph(), 2, 5)))
+				.isEqualTo(PackedMove.NONE);
+	}
+
+	@Test
+	public void testProbeRejectsInvalidMove() throws IOException {
+		ScotlandYardAIModel model = TestModels.model(TestModels.smallGraph(), 1, 5);
+		// No taxi goes from 1 to 3, as if the key were that of another position.
+		OpeningBook book = book(model, PackedMove.single(Ticket.TAXI.ordinal(), 3));
+		assertThat(book.size()).isEqualTo(1);
+		assertThat(book.probe(model)).isEqualTo(PackedMove.NONE);
+	}
+
+}
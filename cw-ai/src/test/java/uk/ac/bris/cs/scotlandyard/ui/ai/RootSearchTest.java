@@ -0,0 +1,86 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RootSearch}
+ */
+public class RootSearchTest {
+
+	// Mr.X at 1 can take the bus to 58, but no taxi goes to 4.
+	private static final int VALID = PackedMove.single(Ticket.BUS.ordinal(), 58);
+	private static final int INVALID = PackedMove.single(Ticket.TAXI.ordinal(), 4);
+
+	private final TranspositionTable.Entry entry = new TranspositionTable.Entry();
+	private ScotlandYardAIModel model;
+	private Cache cache;
+	private RootSearch search;
+
+	@Before
+	public void start() throws IOException {
+		model = TestModels.standardModel(1, 13);
+		cache = SharedCache.acquire(model);
+		search = new RootSearch(cache, null, 3, 1, false, 16);
+	}
+
+	@After
+	public void stop() {
+		search.shutdown();
+		SharedCache.release(cache);
+	}
+
+	// Searches with the deadline passed, so only an untimed first iteration completes.
+	private int searchOutOfTime() {
+		return search.search(model, System.nanoTime() - 1);
+	}
+
+	// The root's table entry after the search.
+	private TranspositionTable.Entry rootEntry() {
+		assertThat(search.table().probe(model.state().hash(), entry)).isTrue();
+		return entry;
+	}
+
+	@Test
+	public void testExactEntryOfARootMoveIsReRooted() {
+		search.table().newSearch();
+		search.table().store(model.state().hash(), 3, TranspositionTable.EXACT, 1.0, VALID);
+
+		// The iterations up to depth 3 are skipped, and the timed one runs out, so the table's move is played.
+		assertThat(searchOutOfTime()).isEqualTo(VALID);
+		assertThat(rootEntry().depth).isEqualTo(3);
+	}
+
+	@Test
+	public void testUpperEntryIsNotReRooted() {
+		search.table().newSearch();
+		search.table().store(model.state().hash(), 3, TranspositionTable.UPPER, 1.0, VALID);
+
+		// Only the best of the upper bounds, so the search starts at depth 1 and completes it.
+		searchOutOfTime();
+		assertThat(rootEntry().depth).isEqualTo(1);
+		assertThat(rootEntry().bound).isEqualTo(TranspositionTable.EXACT);
+	}
+
+	@Test
+	public void testEntryWithAnotherPositionsMoveIsNotReRooted() {
+		search.table().newSearch();
+		search.table().store(model.state().hash(), 3, TranspositionTable.EXACT, 1.0, INVALID);
+
+		int move = searchOutOfTime();
+		MoveBuffer moves = new MoveBuffer();
+		model.generateMoves(GameState.MRX, moves);
+		assertThat(moves.contains(move)).isTrue();
+		assertThat(rootEntry().depth).isEqualTo(1);
+	}
+
+}
@@ -0,0 +1,60 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link SharedCache}
+ */
+public class SharedCacheTest {
+
+	private static final ScotlandYardAIModel MODEL = TestModels.model(TestModels.smallGraph(), 1, 5);
+
+	@AfterClass
+	public static void deleteFile() {
+		SharedCache.file(MODEL.getCompiledGraph().fingerprint()).delete();
+	}
+
+	@Test
+	public void testGamesOnTheSameMapShareOneCache() {
+		Cache first = SharedCache.acquire(MODEL);
+		Cache second = SharedCache.acquire(TestModels.model(TestModels.smallGraph(), 3, 7, 8));
+		try {
+			assertThat(second).isSameAs(first);
+		} finally {
+			SharedCache.release(first);
+			SharedCache.release(second);
+		}
+	}
+
+	@Test
+	public void testCacheIsKeptUntilTheLastRelease() {
+		Cache first = SharedCache.acquire(MODEL);
+		Cache second = SharedCache.acquire(MODEL);
+		SharedCache.release(first);
+		Cache third = SharedCache.acquire(MODEL);
+		assertThat(third).isSameAs(first);
+		SharedCache.release(second);
+		SharedCache.release(third);
+
+		// Every game gave it back, so the next one gets a cache of its own.
+		Cache rebuilt = SharedCache.acquire(MODEL);
+		try {
+			assertThat(rebuilt).isNotSameAs(first);
+			assertThat(rebuilt.fingerprint()).isEqualTo(first.fingerprint());
+		} finally {
+			SharedCache.release(rebuilt);
+		}
+	}
+
+	@Test
+	public void testReleasingMoreThanAcquiredShouldThrow() {
+		Cache cache = SharedCache.acquire(MODEL);
+		SharedCache.release(cache);
+		assertThatThrownBy(() -> SharedCache.release(cache)).isInstanceOf(IllegalStateException.class);
+	}
+
+}
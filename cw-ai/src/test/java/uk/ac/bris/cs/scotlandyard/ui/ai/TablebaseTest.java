@@ -0,0 +1,155 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link Tablebase} and {@link TablebaseGenerator}
+ */
+public class TablebaseTest {
+
+	private static final int ROUNDS = 3;
+
+	// A map small enough to search every position of by brute force.
+	private static CompiledGraph<Transport> graph;
+	private static Tablebase tablebase;
+	private static int nodes;
+	// caught[r][subgame * nodes + mrX]: the detectives catch mr.X within r rounds, see caught.
+	private static boolean[][] caught;
+
+	@BeforeClass
+	public static void build() throws IOException {
+		graph = CompiledGraph.compile(TestModels.smallGraph(), Transport.class);
+		nodes = graph.maxNode() + 1;
+
+		TablebaseGenerator generator = new TablebaseGenerator(graph);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		File file = File.createTempFile("tablebase", ".dat");
+		file.deleteOnExit();
+		try {
+			generator.write(file, generator.build(pool, ROUNDS));
+		} finally {
+			pool.shutdown();
+		}
+		tablebase = Tablebase.load(file, graph.fingerprint());
+
+		caught = new boolean[ROUNDS + 1][Tablebase.DOUBLES * nodes * nodes * nodes];
+		for (int r = 1; r <= ROUNDS; r++)
+			for (int d = 0; d < Tablebase.DOUBLES; d++)
+				for (int f = 1; f < nodes; f++)
+					for (int s = 1; s < nodes; s++)
+						for (int x = 1; x < nodes; x++)
+							if (x != f && x != s)
+								caught[r][index(d, f, s, x)] = caught(r, d, f, s, x);
+	}
+
+	private static int index(int doubles, int first, int second, int mrX) {
+		return Tablebase.subgame(doubles, first, second, nodes) * nodes + mrX;
+	}
+
+	// The nodes one edge away, any edge for mr.X, any but a ferry for a detective.
+	private static List<Integer> steps(int node, boolean mrX) {
+		List<Integer> steps = new ArrayList<>();
+		for (int e = graph.firstEdge(node); e < graph.endEdge(node); e++)
+			if ((mrX || graph.data(e) != Transport.FERRY) && !steps.contains(graph.target(e)))
+				steps.add(graph.target(e));
+		return steps;
+	}
+
+	// Mr.X to move at x, the detectives at f then s: true if every single move of his, and every double move if he
+	// has a double ticket, lets the detectives catch him within r rounds. Worked out from round r - 1.
+	private static boolean caught(int r, int d, int f, int s, int x) {
+		for (int y : steps(x, true)) {
+			if (y == f || y == s) continue;
+			if (!answered(r, d, f, s, y)) return false;
+			if (d > 0)
+				for (int z : steps(y, true))
+					if (z != f && z != s && !answered(r, d - 1, f, s, z)) return false;
+		}
+		return true;
+	}
+
+	// Mr.X moved to y: true if the detectives can land on him, or move to a position caught within r - 1 rounds.
+	// A detective with no move passes, and two detectives never share a node.
+	private static boolean answered(int r, int d, int f, int s, int y) {
+		List<Integer> firsts = steps(f, false);
+		if (f != s) firsts.remove(Integer.valueOf(s));
+		if (firsts.isEmpty()) firsts.add(f);
+		for (int ft : firsts) {
+			if (ft == y) return true;
+			if (f == s) {
+				if (caught[r - 1][index(d, ft, ft, y)]) return true;
+				continue;
+			}
+			List<Integer> seconds = steps(s, false);
+			seconds.remove(Integer.valueOf(ft));
+			if (seconds.isEmpty()) seconds.add(s);
+			for (int st : seconds)
+				if (st == y || caught[r - 1][index(d, ft, st, y)]) return true;
+		}
+		return false;
+	}
+
+	@Test
+	public void testLookupMatchesBruteForce() {
+		int proven = 0;
+		for (int d = 0; d < Tablebase.DOUBLES; d++)
+			for (int f = 1; f < nodes; f++)
+				for (int s = 1; s < nodes; s++)
+					for (int x = 1; x < nodes; x++) {
+						if (x == f || x == s) continue;
+						int expected = Tablebase.NONE;
+						if (caught[ROUNDS][index(d, f, s, x)]) {
+							expected = 1;
+							while (!caught[expected][index(d, f, s, x)]) expected++;
+							proven++;
+						}
+						assertThat(tablebase.lookup(d, f, s, x))
+								.as("mr.X at %d with %d doubles, detectives at %d and %d", x, d, f, s)
+								.isEqualTo(expected);
+					}
+		assertThat(tablebase.size()).isEqualTo(proven);
+		assertThat(proven).isGreaterThan(0);
+	}
+
+	@Test
+	public void testMoreDoublesThanSubgamesProveNothing() {
+		// A two detective position the top subgame proves.
+		int f = 0, s = 0, x = 0;
+		search:
+		for (f = 1; f < nodes; f++)
+			for (s = 1; s < nodes; s++)
+				for (x = 1; x < nodes; x++)
+					if (f != s && x != f && x != s
+							&& tablebase.lookup(Tablebase.DOUBLES - 1, f, s, x) != Tablebase.NONE)
+						break search;
+		assertThat(f).isLessThan(nodes);
+
+		Colour[] colours = { Colour.BLACK, Colour.BLUE, Colour.GREEN };
+		int[] locations = { x, f, s };
+		long detective = GameState.pack(10, 10, 10, 0, 0);
+		GameState proven = new GameState(colours, locations,
+				new long[] { GameState.pack(4, 4, 4, Tablebase.DOUBLES - 1, 5), detective, detective },
+				0, GameState.MRX, 22, graph.maxNode());
+		assertThat(tablebase.probe(proven)).isNotEqualTo(Tablebase.NONE);
+
+		// With another double ticket he has escapes the subgame never looked at.
+		GameState more = new GameState(colours, locations,
+				new long[] { GameState.pack(4, 4, 4, Tablebase.DOUBLES, 5), detective, detective },
+				0, GameState.MRX, 22, graph.maxNode());
+		assertThat(tablebase.probe(more)).isEqualTo(Tablebase.NONE);
+	}
+
+}
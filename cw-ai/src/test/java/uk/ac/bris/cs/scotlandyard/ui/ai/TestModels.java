@@ -0,0 +1,80 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader.fromLines;
+
+/**
+ * Games the A.I.'s tests start from
+ */
+class TestModels {
+
+	private static final Colour[] DETECTIVES = { Colour.BLUE, Colour.GREEN, Colour.RED, Colour.WHITE,
+			Colour.YELLOW };
+	// The tests never start the game, so its players are never asked to move.
+	private static final Player NONE = (view, location, moves, callback) -> {};
+
+	/**
+	 * A map of 9 nodes, with every kind of edge, too small for the cache's distance table to be worth computing
+	 */
+	static ImmutableGraph<Integer, Transport> smallGraph() {
+		return fromLines(Arrays.asList("9 13", "1", "2", "3", "4", "5", "6", "7", "8", "9", "1 2 Taxi",
+				"2 3 Taxi", "3 4 Taxi", "4 5 Taxi", "5 6 Taxi", "6 1 Taxi", "1 4 Bus", "2 7 Taxi",
+				"7 8 Underground", "8 9 Taxi", "9 3 Bus", "5 9 Ferry", "6 8 Taxi"));
+	}
+
+	/**
+	 * Starts a game with the standard rounds and tickets
+	 *
+	 * @param graph the map
+	 * @param mrX mr.X's location
+	 * @param detectives the detectives' locations, one to five
+	 * @return the game
+	 */
+	static ScotlandYardModel game(ImmutableGraph<Integer, Transport> graph, int mrX, int... detectives) {
+		PlayerConfiguration[] configurations = new PlayerConfiguration[detectives.length];
+		for (int i = 0; i < detectives.length; i++)
+			configurations[i] = new PlayerConfiguration.Builder(DETECTIVES[i]).using(NONE)
+					.with(StandardGame.generateDetectiveTickets()).at(detectives[i]).build();
+		return new ScotlandYardModel(StandardGame.ROUNDS, graph,
+				new PlayerConfiguration.Builder(Colour.BLACK).using(NONE)
+						.with(StandardGame.generateMrXTickets()).at(mrX).build(),
+				configurations[0], Arrays.copyOfRange(configurations, 1, configurations.length));
+	}
+
+	/**
+	 * A model of a game at its start, with mr.X to move
+	 *
+	 * @param graph the map
+	 * @param mrX mr.X's location
+	 * @param detectives the detectives' locations, one to five
+	 * @return the model
+	 */
+	static ScotlandYardAIModel model(ImmutableGraph<Integer, Transport> graph, int mrX, int... detectives) {
+		return new ScotlandYardAIModel(game(graph, mrX, detectives),
+				CompiledGraph.compile(graph, Transport.class), mrX);
+	}
+
+	/**
+	 * A model of a standard game at its start, with mr.X to move
+	 *
+	 * @param mrX mr.X's location
+	 * @param detectives the detectives' locations, one to five
+	 * @return the model
+	 * @throws IOException if the standard map can't be read
+	 */
+	static ScotlandYardAIModel standardModel(int mrX, int... detectives) throws IOException {
+		return model(StandardGame.standardGraph(), mrX, detectives);
+	}
+
+}
@@ -0,0 +1,144 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for {@link TranspositionTable}
+ */
+public class TranspositionTableTest {
+
+	private static final long KEY = 0x1234_5678_9ABCL;
+
+	private final TranspositionTable.Entry entry = new TranspositionTable.Entry();
+
+	@Test
+	public void testReturnsWhatWasStored() {
+		TranspositionTable table = new TranspositionTable(4);
+		table.newSearch();
+		assertThat(table.probe(KEY, entry)).isFalse();
+
+		table.store(KEY, 3, TranspositionTable.LOWER, -42.5, PackedMove.PASS);
+		assertThat(table.probe(KEY, entry)).isTrue();
+		assertThat(entry.depth).isEqualTo(3);
+		assertThat(entry.bound).isEqualTo(TranspositionTable.LOWER);
+		assertThat(entry.score).isEqualTo(-42.5);
+		assertThat(entry.move).isEqualTo(PackedMove.PASS);
+	}
+
+	@Test
+	public void testOtherKeyOfSameSlotMisses() {
+		TranspositionTable table = new TranspositionTable(4);
+		table.newSearch();
+		table.store(KEY, 3, TranspositionTable.EXACT, 1.0, 7);
+		// Same low bits, so the same slot, told apart by the check word only.
+		assertThat(table.probe(KEY + 16, entry)).isFalse();
+		assertThat(table.probe(KEY ^ 1L << 63, entry)).isFalse();
+		assertThat(table.probe(KEY, entry)).isTrue();
+	}
+
+	@Test
+	public void testTornEntryMisses() throws ReflectiveOperationException {
+		TranspositionTable table = new TranspositionTable(4);
+		table.newSearch();
+		table.store(KEY, 3, TranspositionTable.EXACT, 1.0, 7);
+
+		// Another thread's score written over this entry's, as by two stores at once.
+		Field field = TranspositionTable.class.getDeclaredField("scores");
+		field.setAccessible(true);
+		long[] scores = (long[]) field.get(table);
+		scores[(int) KEY & 15] = Double.doubleToLongBits(2.0);
+		assertThat(table.probe(KEY, entry)).isFalse();
+	}
+
+	@Test
+	public void testDeeperEntryOfCurrentSearchIsKept() {
+		TranspositionTable table = new TranspositionTable(4);
+		table.newSearch();
+		table.store(5, 4, TranspositionTable.EXACT, 1.0, 7);
+		table.store(5 + 16, 2, TranspositionTable.EXACT, 2.0, 8);
+		assertThat(table.probe(5, entry)).isTrue();
+		assertThat(entry.move).isEqualTo(7);
+		assertThat(table.probe(5 + 16, entry)).isFalse();
+
+		// One as deep or deeper replaces it.
+		table.store(5 + 16, 4, TranspositionTable.EXACT, 2.0, 8);
+		assertThat(table.probe(5 + 16, entry)).isTrue();
+		table.store(5, 6, TranspositionTable.UPPER, 3.0, 9);
+		assertThat(table.probe(5, entry)).isTrue();
+		assertThat(entry.depth).isEqualTo(6);
+		assertThat(entry.bound).isEqualTo(TranspositionTable.UPPER);
+	}
+
+	@Test
+	public void testOlderSearchIsReplacedWhateverDepth() {
+		TranspositionTable table = new TranspositionTable(4);
+		table.newSearch();
+		table.store(5, 4, TranspositionTable.EXACT, 1.0, 7);
+
+		table.newSearch();
+		// Still found until it is replaced.
+		assertThat(table.probe(5, entry)).isTrue();
+		table.store(5 + 16, 0, TranspositionTable.EXACT, 2.0, 8);
+		assertThat(table.probe(5 + 16, entry)).isTrue();
+		assertThat(entry.move).isEqualTo(8);
+		assertThat(table.probe(5, entry)).isFalse();
+
+		// The entry is of the current search now, so it's kept over a shallower one.
+		table.store(5, 0, TranspositionTable.EXACT, 1.0, 7);
+		table.store(5, 1, TranspositionTable.EXACT, 1.0, 9);
+		assertThat(table.probe(5, entry)).isTrue();
+		assertThat(entry.move).isEqualTo(9);
+	}
+
+	// Stores a deep entry, then a shallow one in the same slot a number of searches later.
+	private boolean keptAfter(int searches) {
+		TranspositionTable table = new TranspositionTable(4);
+		table.newSearch();
+		table.store(5, 4, TranspositionTable.EXACT, 1.0, 7);
+		for (int i = 0; i < searches; i++)
+			table.newSearch();
+		table.store(5 + 16, 0, TranspositionTable.EXACT, 2.0, 8);
+		return table.probe(5, entry);
+	}
+
+	@Test
+	public void testAgesWrapAround() {
+		assertThat(keptAfter(1)).isFalse();
+		assertThat(keptAfter(254)).isFalse();
+		// 255 searches later the age comes round again, and the entry looks current.
+		assertThat(keptAfter(255)).isTrue();
+	}
+
+	@Test
+	public void testClearRemovesEntriesAndCountersCount() {
+		TranspositionTable table = new TranspositionTable(4);
+		table.newSearch();
+		table.store(5, 4, TranspositionTable.EXACT, 1.0, 7);
+		assertThat(table.probe(5, entry)).isTrue();
+		table.clear();
+		assertThat(table.probe(5, entry)).isFalse();
+
+		assertThat(table.hits()).isEqualTo(1);
+		assertThat(table.misses()).isEqualTo(1);
+		assertThat(table.stores()).isEqualTo(1);
+		assertThat(table.hitRate()).isCloseTo(0.5, within(1e-9));
+		table.resetCounters();
+		assertThat(table.hits() + table.misses() + table.stores()).isEqualTo(0);
+		assertThat(table.hitRate()).isEqualTo(0.0);
+	}
+
+	@Test
+	public void testSizeOutOfRangeShouldThrow() {
+		assertThatThrownBy(() -> new TranspositionTable(0)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new TranspositionTable(31)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
@@ -0,0 +1,150 @@
+package uk.ac.bris.cs.scotlandyard.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Benchmarks of {@link ScotlandYardModel} and {@link ScotlandYardGraphReader}
+ * on the positions of {@link Positions}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+	/**
+	 * A game at its start, waiting for mr.X to move
+	 */
+	@State(Scope.Thread)
+	public static class MrXToMove {
+		final Positions.Recorder mrX = new Positions.Recorder(false);
+		ScotlandYardModel model;
+
+		@Setup
+		public void setUp() throws IOException {
+			model = Positions.standard(Positions.graph(), mrX, new Positions.Recorder(false));
+		}
+	}
+
+	/**
+	 * A game after mr.X's first move, waiting for the first detective to move
+	 */
+	@State(Scope.Thread)
+	public static class DetectiveToMove {
+		final Positions.Recorder detectives = new Positions.Recorder(false);
+		ScotlandYardModel model;
+
+		@Setup
+		public void setUp() throws IOException {
+			model = Positions.standard(Positions.graph(), new Positions.Recorder(true), detectives);
+			model.startRotate();
+		}
+	}
+
+	/**
+	 * A new game for every call, with mr.X's first move chosen. Making a game
+	 * isn't measured, but JMH can only time calls this short roughly.
+	 */
+	@State(Scope.Thread)
+	public static class Accept {
+		ImmutableGraph<Integer, Transport> graph;
+		ScotlandYardModel model;
+		Move move;
+
+		@Setup
+		public void setUpGraph() throws IOException {
+			graph = Positions.graph();
+		}
+
+		@Setup(Level.Invocation)
+		public void setUp() {
+			Positions.Recorder mrX = new Positions.Recorder(false);
+			model = Positions.standard(graph, mrX, new Positions.Recorder(false));
+			model.startRotate();
+			move = mrX.first();
+		}
+	}
+
+	/**
+	 * The lines of the standard map
+	 */
+	@State(Scope.Benchmark)
+	public static class GraphLines {
+		List<String> lines;
+
+		@Setup
+		public void setUp() throws IOException {
+			try (InputStream stream = ScotlandYardModel.class.getClassLoader()
+					.getResourceAsStream("graph.txt")) {
+				if (stream == null) throw new IOException("Resource graph.txt not found");
+				lines = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))
+						.lines().collect(Collectors.toList());
+			}
+		}
+	}
+
+	/**
+	 * Makes mr.X's first move, which includes offering the first detective its
+	 * moves
+	 */
+	@Benchmark
+	public ScotlandYardModel accept(Accept state) {
+		state.model.accept(state.move);
+		return state.model;
+	}
+
+	/**
+	 * Offers mr.X his valid moves, with double and secret moves
+	 */
+	@Benchmark
+	public Set<Move> mrXValidMoves(MrXToMove state) {
+		state.model.startRotate();
+		return state.mrX.moves();
+	}
+
+	/**
+	 * Offers the first detective its valid moves
+	 */
+	@Benchmark
+	public Set<Move> detectiveValidMoves(DetectiveToMove state) {
+		state.model.startRotate();
+		return state.detectives.moves();
+	}
+
+	@Benchmark
+	public boolean isGameOver(MrXToMove state) {
+		return state.model.isGameOver();
+	}
+
+	@Benchmark
+	public ImmutableGraph<Integer, Transport> readGraph(GraphLines state) {
+		return ScotlandYardGraphReader.fromLines(state.lines);
+	}
+}
@@ -0,0 +1,118 @@
+package uk.ac.bris.cs.scotlandyard.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * The fixed positions all benchmarks run on: a standard game whose starting
+ * locations are picked by {@link StandardGame} from {@link #SEED}, so that
+ * results of different runs can be compared.
+ */
+public final class Positions {
+
+	/**
+	 * The seed the starting locations are picked with
+	 */
+	public static final int SEED = 42;
+
+	/**
+	 * Mr.X's starting location
+	 */
+	public static final int MRX_LOCATION = StandardGame.generateMrXLocation(SEED);
+
+	private static final Colour[] DETECTIVES = { Colour.BLUE, Colour.GREEN, Colour.RED,
+			Colour.WHITE, Colour.YELLOW };
+
+	private Positions() {}
+
+	/**
+	 * A player that remembers the moves it was offered. If it answers, it
+	 * always plays the same move, otherwise the game waits for it forever.
+	 */
+	public static final class Recorder implements Player {
+
+		private final boolean answers;
+		private Set<Move> moves;
+
+		/**
+		 * @param answers whether the player makes the moves it is asked for
+		 */
+		public Recorder(boolean answers) {
+			this.answers = answers;
+		}
+
+		@Override
+		public void makeMove(ScotlandYardView view, int location, Set<Move> moves,
+				Consumer<Move> callback) {
+			this.moves = moves;
+			if (answers) callback.accept(first());
+		}
+
+		/**
+		 * @return the moves last offered to the player
+		 */
+		public Set<Move> moves() {
+			return moves;
+		}
+
+		/**
+		 * @return the move this player plays from the moves last offered to it;
+		 *         the same move in every run
+		 */
+		public Move first() {
+			return moves.stream().min(Comparator.comparing(Move::toString)).get();
+		}
+	}
+
+	/**
+	 * @return the standard map
+	 * @throws IOException if the map can't be read
+	 */
+	public static ImmutableGraph<Integer, Transport> graph() throws IOException {
+		return StandardGame.standardGraph();
+	}
+
+	/**
+	 * Makes a new game at its start, with mr.X to move. It has standard tickets,
+	 * so mr.X can make double and secret moves.
+	 *
+	 * @param graph the map, from {@link #graph()}
+	 * @param mrX mr.X's player
+	 * @param detectives the player of all five detectives
+	 * @return the game
+	 */
+	public static ScotlandYardModel standard(ImmutableGraph<Integer, Transport> graph,
+			Player mrX, Player detectives) {
+		List<Integer> locations = StandardGame.generateDetectiveLocations(SEED,
+				DETECTIVES.length);
+		List<PlayerConfiguration> configurations = new ArrayList<>();
+		for (int i = 0; i < DETECTIVES.length; i++)
+			configurations.add(new PlayerConfiguration.Builder(DETECTIVES[i])
+					.using(detectives)
+					.with(StandardGame.generateDetectiveTickets())
+					.at(locations.get(i))
+					.build());
+		return new ScotlandYardModel(StandardGame.ROUNDS, graph,
+				new PlayerConfiguration.Builder(Colour.BLACK)
+						.using(mrX)
+						.with(StandardGame.generateMrXTickets())
+						.at(MRX_LOCATION)
+						.build(),
+				configurations.get(0),
+				configurations.subList(1, DETECTIVES.length).toArray(new PlayerConfiguration[0]));
+	}
+}
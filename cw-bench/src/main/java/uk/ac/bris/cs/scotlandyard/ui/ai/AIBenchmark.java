@@ -0,0 +1,107 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.openjdk.jmh.annotations.*;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.bench.Positions;
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Benchmarks of the AI's cache and search on the positions of Positions. It lives in the AI's package, as the
+// classes it measures aren't public. The cache file is made in the working directory by the first run.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AIBenchmark{
+
+    // The game after mr.X's first move, as the search sees it, with the shared cache of its map and a move of the
+    // first detective.
+    @State(Scope.Thread)
+    public static class Game{
+        Cache cache;
+        File file;
+        ScotlandYardAIModel model;
+        Search search;
+        int detectiveMove;
+
+        @Setup
+        public void setUp() throws IOException{
+            ScotlandYardModel game = Positions.standard(Positions.graph(), new Positions.Recorder(false),
+                    new Positions.Recorder(false));
+            model = new ScotlandYardAIModel(game, CompiledGraph.compile(game.getGraph(), Transport.class),
+                    Positions.MRX_LOCATION);
+            cache = SharedCache.acquire(model);
+            file = SharedCache.file(cache.fingerprint());
+            search = new Search(cache, null, null, 1);
+
+            MoveBuffer moves = new MoveBuffer();
+            model.generateMoves(GameState.MRX, moves);
+            model.applyMove(moves.get(0));
+            model.generateMoves(model.getCurrentPlayerNumber(), moves);
+            detectiveMove = moves.get(0);
+        }
+
+        @TearDown
+        public void tearDown(){
+            SharedCache.release(cache);
+        }
+    }
+
+    // The same game, with a search that looks depth mr.X moves ahead.
+    @State(Scope.Thread)
+    public static class Deep extends Game{
+        @Param({"1", "2"})
+        int depth;
+
+        @Setup
+        public void setUpSearch(){
+            search = new Search(cache, null, null, depth);
+        }
+    }
+
+    // Maps the cache file and checks its header and checksum.
+    @Benchmark
+    public Cache loadCache(Game state) throws IOException{
+        return Cache.load(state.file, state.cache.fingerprint());
+    }
+
+    // Looks up the distance from every detective, with its tickets, to every node of the map.
+    @Benchmark
+    public int getDistance(Game state){
+        GameState game = state.model.state();
+        int sum = 0;
+        for(int p = 1; p < game.players(); p++)
+            for(int to = 1; to < Cache.NODES; to++)
+                sum += state.cache.getDistance(game.location(p), to, game.tickets(p));
+        return sum;
+    }
+
+    // Scores the game again, which reuses every detective's distance.
+    @Benchmark
+    public double scoreModel(Game state){
+        return state.search.scoreModel(state.model, GameState.MRX);
+    }
+
+    // Makes the first detective's move and scores it, which looks up that detective's distance again.
+    @Benchmark
+    public double scoreDetectiveMove(Game state){
+        int detective = state.model.getCurrentPlayerNumber();
+        state.model.applyMove(state.detectiveMove);
+        double score = state.search.scoreModel(state.model, detective);
+        state.model.revertMove();
+        return score;
+    }
+
+    // Searches the detectives' replies to mr.X's move, depth mr.X moves deep, without a transposition table.
+    @Benchmark
+    public double minMax(Deep state){
+        return state.search.minMax(state.model, 0, false, RootSearch.LOWEST, RootSearch.HIGHEST);
+    }
+}
@@ -0,0 +1,92 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+/**
+ * The neighbours of every node of a {@link CompiledGraph} as {@link NodeBits}
+ * sets, one set per node and edge data value plus one for edges of any data.
+ * Moving a whole set of nodes along one edge is then a few word operations
+ * per node in the set rather than a walk over the edges:
+ *
+ * <pre>
+ * adjacency.step(possible, Transport.BUS.ordinal(), next);
+ * </pre>
+ */
+public final class AdjacencyBits {
+
+	private final int words;
+	private final int nodes;
+	// Indexed by ((data ordinal + 1) * nodes + node) * words, data ordinal -1
+	// holds the edges of any data.
+	private final long[] masks;
+
+	/**
+	 * @param graph the graph; not null
+	 */
+	public AdjacencyBits(CompiledGraph<?> graph) {
+		words = NodeBits.create(graph.maxNode()).length;
+		nodes = graph.maxNode() + 1;
+		masks = new long[(graph.dataTypes() + 1) * nodes * words];
+		for (int i = 0; i < graph.size(); i++) {
+			int node = graph.node(i);
+			for (int e = graph.firstEdge(node); e < graph.endEdge(node); e++) {
+				int target = graph.target(e);
+				set(offset(-1, node), target);
+				set(offset(graph.dataOrdinal(e), node), target);
+			}
+		}
+	}
+
+	private int offset(int ordinal, int node) {
+		return ((ordinal + 1) * nodes + node) * words;
+	}
+
+	private void set(int offset, int target) {
+		masks[offset + (target >>> 6)] |= 1L << target;
+	}
+
+	/**
+	 * @return number of words of the sets this works on, as made by
+	 *         {@code NodeBits.create(graph.maxNode())}
+	 */
+	public int words() {
+		return words;
+	}
+
+	/**
+	 * Finds the nodes one edge with the given data away from any node of a
+	 * set
+	 *
+	 * @param from the set to move from; not modified
+	 * @param ordinal the ordinal of the edge data to move along
+	 * @param to the set to fill; must not be {@code from}
+	 */
+	public void step(long[] from, int ordinal, long[] to) {
+		stepFrom(from, ordinal, to);
+	}
+
+	/**
+	 * Finds the nodes one edge of any data away from any node of a set
+	 *
+	 * @param from the set to move from; not modified
+	 * @param to the set to fill; must not be {@code from}
+	 */
+	public void stepAny(long[] from, long[] to) {
+		stepFrom(from, -1, to);
+	}
+
+	private void stepFrom(long[] from, int ordinal, long[] to) {
+		if (from == to) throw new IllegalArgumentException("Sets must differ");
+		NodeBits.clear(to);
+		for (int w = 0; w < words; w++) {
+			long word = from[w];
+			while (word != 0) {
+				int node = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				if (node >= nodes) break;
+				int offset = offset(ordinal, node);
+				for (int i = 0; i < words; i++)
+					to[i] |= masks[offset + i];
+			}
+		}
+	}
+
+}
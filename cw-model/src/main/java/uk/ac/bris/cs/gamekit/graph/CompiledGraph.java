@@ -0,0 +1,249 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A read-only, primitive array representation of a {@link Graph} with integer
+ * node values and enum edge data. Edges are stored in compressed sparse row
+ * form: the outgoing edges of node {@code n} occupy the index range
+ * {@code [firstEdge(n), endEdge(n))} of the {@code targets} and {@code data}
+ * arrays, in the same order as {@link Graph#getEdgesFrom(Node)} returns them.
+ *
+ * <br>
+ * Nodes are addressed directly by their value, so node values must not be
+ * negative. Iterating over neighbours neither allocates nor boxes:
+ *
+ * <pre>
+ * for (int e = graph.firstEdge(node); e &lt; graph.endEdge(node); e++) {
+ * 	int destination = graph.target(e);
+ * 	Transport transport = graph.data(e);
+ * }
+ * </pre>
+ *
+ * @param <D> the enum type for {@link Edge} data
+ */
+public final class CompiledGraph<D extends Enum<D>> implements Serializable {
+
+	private static final long serialVersionUID = -2470826123540412791L;
+	private final D[] values;
+	private final int[] nodes;
+	private final boolean[] present;
+	private final int[] offsets;
+	private final int[] targets;
+	private final byte[] data;
+
+	private CompiledGraph(D[] values, int[] nodes, boolean[] present, int[] offsets,
+			int[] targets, byte[] data) {
+		this.values = values;
+		this.nodes = nodes;
+		this.present = present;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.data = data;
+	}
+
+	/**
+	 * Compiles the given graph, the graph is read once and not referenced
+	 * afterwards
+	 *
+	 * @param graph the graph to compile; not null, node values must not be
+	 *        negative and edge data must not be null
+	 * @param type the enum class of the edge data; not null
+	 * @param <D> the enum type for {@link Edge} data
+	 * @return the compiled graph; never null
+	 */
+	public static <D extends Enum<D>> CompiledGraph<D> compile(Graph<Integer, D> graph,
+			Class<D> type) {
+		Objects.requireNonNull(graph, "graph == null");
+		D[] values = Objects.requireNonNull(type, "type == null").getEnumConstants();
+		if (values.length > Byte.MAX_VALUE)
+			throw new IllegalArgumentException(type + " has too many constants");
+
+		List<Node<Integer>> graphNodes = graph.getNodes();
+		int[] nodes = new int[graphNodes.size()];
+		int maxNode = 0;
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = graphNodes.get(i).value();
+			if (nodes[i] < 0) throw new IllegalArgumentException(
+					graphNodes.get(i) + " has a negative value");
+			maxNode = Math.max(maxNode, nodes[i]);
+		}
+
+		boolean[] present = new boolean[maxNode + 1];
+		int[] offsets = new int[maxNode + 2];
+		for (Node<Integer> node : graphNodes) {
+			present[node.value()] = true;
+			offsets[node.value() + 1] = graph.getEdgesFrom(node).size();
+		}
+		for (int n = 0; n <= maxNode; n++)
+			offsets[n + 1] += offsets[n];
+
+		int[] targets = new int[offsets[maxNode + 1]];
+		byte[] data = new byte[targets.length];
+		for (Node<Integer> node : graphNodes) {
+			Collection<Edge<Integer, D>> edges = graph.getEdgesFrom(node);
+			int e = offsets[node.value()];
+			for (Edge<Integer, D> edge : edges) {
+				targets[e] = edge.destination().value();
+				data[e] = (byte) Objects.requireNonNull(edge.data(), edge + " has no data")
+						.ordinal();
+				e++;
+			}
+		}
+		return new CompiledGraph<>(values, nodes, present, offsets, targets, data);
+	}
+
+	/**
+	 * @return number of nodes in this graph
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * @return the largest node value in this graph, or zero if the graph is
+	 *         empty; arrays indexed by node value need {@code maxNode() + 1}
+	 *         slots
+	 */
+	public int maxNode() {
+		return present.length - 1;
+	}
+
+	/**
+	 * Retrieves a node value by its insertion order, see
+	 * {@link Graph#getNodes()}
+	 *
+	 * @param index the index, from zero to {@code size() - 1}
+	 * @return the node value
+	 */
+	public int node(int index) {
+		return nodes[index];
+	}
+
+	/**
+	 * Checks whether a node with the given value exists
+	 */
+	public boolean containsNode(int node) {
+		return node >= 0 && node < present.length && present[node];
+	}
+
+	/**
+	 * @return total number of directed edges in this graph
+	 */
+	public int edgeCount() {
+		return targets.length;
+	}
+
+	/**
+	 * @param node the source node; must be in this graph
+	 * @return index of the first edge going out of the node
+	 */
+	public int firstEdge(int node) {
+		return offsets[node];
+	}
+
+	/**
+	 * @param node the source node; must be in this graph
+	 * @return index one past the last edge going out of the node
+	 */
+	public int endEdge(int node) {
+		return offsets[node + 1];
+	}
+
+	/**
+	 * @param node the source node; must be in this graph
+	 * @return number of edges going out of the node
+	 */
+	public int degree(int node) {
+		return offsets[node + 1] - offsets[node];
+	}
+
+	/**
+	 * @param edge the edge index
+	 * @return the destination node value of the edge
+	 */
+	public int target(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * @param edge the edge index
+	 * @return the ordinal of the edge data
+	 */
+	public int dataOrdinal(int edge) {
+		return data[edge];
+	}
+
+	/**
+	 * @param edge the edge index
+	 * @return the edge data; never null
+	 */
+	public D data(int edge) {
+		return values[data[edge]];
+	}
+
+	/**
+	 * @return number of distinct edge data values, i.e the number of enum
+	 *         constants
+	 */
+	public int dataTypes() {
+		return values.length;
+	}
+
+	/**
+	 * A 64 bit FNV-1a hash of the nodes, edges and edge data names of this
+	 * graph. Unlike {@link #hashCode()} it is stable across JVMs, so it can
+	 * identify the graph that a file of precomputed data was built from.
+	 *
+	 * @return the fingerprint of this graph
+	 */
+	public long fingerprint() {
+		long hash = 0xCBF29CE484222325L;
+		for (D value : values)
+			for (char c : value.name().toCharArray())
+				hash = fnv(hash, c);
+		for (int node : nodes)
+			hash = fnv(hash, node);
+		for (int offset : offsets)
+			hash = fnv(hash, offset);
+		for (int target : targets)
+			hash = fnv(hash, target);
+		for (byte ordinal : data)
+			hash = fnv(hash, ordinal);
+		return hash;
+	}
+
+	private static long fnv(long hash, int value) {
+		for (int shift = 0; shift < 32; shift += 8)
+			hash = (hash ^ ((value >>> shift) & 0xFF)) * 0x100000001B3L;
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		CompiledGraph<?> that = (CompiledGraph<?>) o;
+		return Arrays.equals(values, that.values) && Arrays.equals(nodes, that.nodes)
+				&& Arrays.equals(offsets, that.offsets) && Arrays.equals(targets, that.targets)
+				&& Arrays.equals(data, that.data);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = Arrays.hashCode(nodes);
+		result = 31 * result + Arrays.hashCode(offsets);
+		result = 31 * result + Arrays.hashCode(targets);
+		result = 31 * result + Arrays.hashCode(data);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledGraph{" + "nodes=" + nodes.length + ", edges=" + targets.length + '}';
+	}
+}
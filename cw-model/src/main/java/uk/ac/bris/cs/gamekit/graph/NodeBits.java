@@ -0,0 +1,127 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+/**
+ * Static helpers for treating a {@code long[]} as a set of node values, one
+ * bit per node. A set for a {@link CompiledGraph} is created with
+ * {@code NodeBits.create(graph.maxNode())}; the 199 node Scotland Yard map
+ * fits in four words. None of the methods allocate, so sets can be kept and
+ * reused on hot paths.
+ */
+public final class NodeBits {
+
+	private NodeBits() {}
+
+	/**
+	 * Creates an empty set able to hold nodes from zero to {@code maxNode}
+	 *
+	 * @param maxNode the largest node value to hold
+	 * @return the set; never null
+	 */
+	public static long[] create(int maxNode) {
+		return new long[(maxNode >>> 6) + 1];
+	}
+
+	/**
+	 * Adds the node to the set
+	 */
+	public static void add(long[] bits, int node) {
+		bits[node >>> 6] |= 1L << node;
+	}
+
+	/**
+	 * Removes the node from the set
+	 */
+	public static void remove(long[] bits, int node) {
+		bits[node >>> 6] &= ~(1L << node);
+	}
+
+	/**
+	 * Checks whether the node is in the set
+	 */
+	public static boolean contains(long[] bits, int node) {
+		return (bits[node >>> 6] & (1L << node)) != 0;
+	}
+
+	/**
+	 * Removes all nodes from the set
+	 */
+	public static void clear(long[] bits) {
+		for (int i = 0; i < bits.length; i++)
+			bits[i] = 0;
+	}
+
+	/**
+	 * Checks whether the set is empty
+	 */
+	public static boolean isEmpty(long[] bits) {
+		for (long word : bits)
+			if (word != 0) return false;
+		return true;
+	}
+
+	/**
+	 * @return number of nodes in the set
+	 */
+	public static int count(long[] bits) {
+		int count = 0;
+		for (long word : bits)
+			count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * Finds the smallest node in the set that is not less than {@code from}.
+	 * Iterating over a set does not allocate:
+	 *
+	 * <pre>
+	 * for (int n = NodeBits.next(bits, 0); n &gt;= 0; n = NodeBits.next(bits, n + 1))
+	 * </pre>
+	 *
+	 * @param bits the set
+	 * @param from the node to start from, inclusive
+	 * @return the node or -1 if there are no more nodes
+	 */
+	public static int next(long[] bits, int from) {
+		int i = from >>> 6;
+		if (i >= bits.length) return -1;
+		long word = bits[i] & (-1L << from);
+		while (true) {
+			if (word != 0) return (i << 6) + Long.numberOfTrailingZeros(word);
+			if (++i == bits.length) return -1;
+			word = bits[i];
+		}
+	}
+
+	/**
+	 * Copies {@code source} into {@code target}, both must have the same
+	 * length
+	 */
+	public static void copy(long[] source, long[] target) {
+		System.arraycopy(source, 0, target, 0, target.length);
+	}
+
+	/**
+	 * Adds all nodes of {@code other} to {@code target}
+	 */
+	public static void or(long[] target, long[] other) {
+		for (int i = 0; i < target.length; i++)
+			target[i] |= other[i];
+	}
+
+	/**
+	 * Keeps only the nodes of {@code target} that are also in {@code other}
+	 */
+	public static void and(long[] target, long[] other) {
+		for (int i = 0; i < target.length; i++)
+			target[i] &= other[i];
+	}
+
+	/**
+	 * Removes all nodes of {@code other} from {@code target}
+	 */
+	public static void andNot(long[] target, long[] other) {
+		for (int i = 0; i < target.length; i++)
+			target[i] &= ~other[i];
+	}
+
+}
@@ -0,0 +1,144 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+/**
+ * The nodes every node of a {@link CompiledGraph} reaches in exactly one and
+ * in exactly two steps, as {@link NodeBits} sets, for every edge data value
+ * of each step and for edges of any data, see {@link #ANY}. A step along
+ * edges of any data is what a secret ticket allows in Scotland Yard, so the
+ * sets cover every ticket combination of a double move, and the nodes a
+ * double move reaches without stopping on a detective are a few word
+ * operations away:
+ *
+ * <pre>
+ * reach.twoSteps(location, ReachBits.ANY, Transport.BUS.ordinal(), detectives, to);
+ * </pre>
+ */
+public final class ReachBits {
+
+	/**
+	 * The ordinal that stands for edges of any data
+	 */
+	public static final int ANY = -1;
+
+	private final int words;
+	private final int nodes;
+	private final int kinds;
+	// Indexed by ((ordinal + 1) * nodes + node) * words.
+	private final long[] one;
+	// Indexed by (((first + 1) * kinds + second + 1) * nodes + node) * words.
+	private final long[] two;
+
+	/**
+	 * @param graph the graph; not null
+	 */
+	public ReachBits(CompiledGraph<?> graph) {
+		AdjacencyBits adjacency = new AdjacencyBits(graph);
+		words = adjacency.words();
+		nodes = graph.maxNode() + 1;
+		kinds = graph.dataTypes() + 1;
+		one = new long[kinds * nodes * words];
+		two = new long[kinds * kinds * nodes * words];
+
+		long[] start = NodeBits.create(graph.maxNode());
+		long[] first = NodeBits.create(graph.maxNode());
+		long[] second = NodeBits.create(graph.maxNode());
+		for (int i = 0; i < graph.size(); i++) {
+			int node = graph.node(i);
+			NodeBits.clear(start);
+			NodeBits.add(start, node);
+			for (int a = ANY; a < kinds - 1; a++) {
+				step(adjacency, start, a, first);
+				System.arraycopy(first, 0, one, oneOffset(a, node), words);
+				for (int b = ANY; b < kinds - 1; b++) {
+					step(adjacency, first, b, second);
+					System.arraycopy(second, 0, two, twoOffset(a, b, node), words);
+				}
+			}
+		}
+	}
+
+	private static void step(AdjacencyBits adjacency, long[] from, int ordinal, long[] to) {
+		if (ordinal == ANY) adjacency.stepAny(from, to);
+		else adjacency.step(from, ordinal, to);
+	}
+
+	private int oneOffset(int ordinal, int node) {
+		return ((ordinal + 1) * nodes + node) * words;
+	}
+
+	private int twoOffset(int first, int second, int node) {
+		return (((first + 1) * kinds + second + 1) * nodes + node) * words;
+	}
+
+	/**
+	 * @return number of words of the sets this works on, as made by
+	 *         {@code NodeBits.create(graph.maxNode())}
+	 */
+	public int words() {
+		return words;
+	}
+
+	/**
+	 * Finds the nodes one edge with the given data away from a node
+	 *
+	 * @param node the node to move from
+	 * @param ordinal the ordinal of the edge data, or {@link #ANY}
+	 * @param to the set to fill
+	 */
+	public void oneStep(int node, int ordinal, long[] to) {
+		System.arraycopy(one, oneOffset(ordinal, node), to, 0, words);
+	}
+
+	/**
+	 * Finds the nodes two edges with the given data away from a node. The node
+	 * itself is in the set if a step leads back to it.
+	 *
+	 * @param node the node to move from
+	 * @param first the ordinal of the data of the first edge, or {@link #ANY}
+	 * @param second the ordinal of the data of the second edge, or
+	 *        {@link #ANY}
+	 * @param to the set to fill
+	 */
+	public void twoSteps(int node, int first, int second, long[] to) {
+		System.arraycopy(two, twoOffset(first, second, node), to, 0, words);
+	}
+
+	/**
+	 * Finds the nodes two edges with the given data away from a node, where
+	 * neither step may end on a node of {@code avoid}. If the first step can't
+	 * end on such a node this is a copy and an and-not of the precomputed set,
+	 * otherwise the sets of the nodes the first step reaches are joined.
+	 *
+	 * @param node the node to move from
+	 * @param first the ordinal of the data of the first edge, or {@link #ANY}
+	 * @param second the ordinal of the data of the second edge, or
+	 *        {@link #ANY}
+	 * @param avoid the nodes neither step may end on; not modified
+	 * @param to the set to fill; must not be {@code avoid}
+	 */
+	public void twoSteps(int node, int first, int second, long[] avoid, long[] to) {
+		if (avoid == to) throw new IllegalArgumentException("Sets must differ");
+		int firstOffset = oneOffset(first, node);
+		boolean blocked = false;
+		for (int i = 0; i < words; i++)
+			blocked |= (one[firstOffset + i] & avoid[i]) != 0;
+
+		if (!blocked) {
+			twoSteps(node, first, second, to);
+		} else {
+			NodeBits.clear(to);
+			for (int w = 0; w < words; w++) {
+				long word = one[firstOffset + w] & ~avoid[w];
+				while (word != 0) {
+					int middle = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					int offset = oneOffset(second, middle);
+					for (int i = 0; i < words; i++)
+						to[i] |= one[offset + i];
+				}
+			}
+		}
+		NodeBits.andNot(to, avoid);
+	}
+
+}
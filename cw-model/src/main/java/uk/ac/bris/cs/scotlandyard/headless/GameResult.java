@@ -0,0 +1,68 @@
+package uk.ac.bris.cs.scotlandyard.headless;
+
+/**
+ * The outcome of one game of a {@link Tournament}
+ */
+public final class GameResult {
+
+	private final int game;
+	private final long seed;
+	private final boolean mrXWon;
+	private final int rounds;
+	private final long millis;
+
+	/**
+	 * @param game the index of the game in the tournament
+	 * @param seed the seed the starting locations were chosen with
+	 * @param mrXWon whether mr.X won the game
+	 * @param rounds the number of rounds played
+	 * @param millis the wall-clock time the game took
+	 */
+	public GameResult(int game, long seed, boolean mrXWon, int rounds, long millis) {
+		this.game = game;
+		this.seed = seed;
+		this.mrXWon = mrXWon;
+		this.rounds = rounds;
+		this.millis = millis;
+	}
+
+	public int game() {
+		return game;
+	}
+
+	public long seed() {
+		return seed;
+	}
+
+	public boolean mrXWon() {
+		return mrXWon;
+	}
+
+	public int rounds() {
+		return rounds;
+	}
+
+	public long millis() {
+		return millis;
+	}
+
+	/**
+	 * @return the header line of {@link #toCsv()}
+	 */
+	public static String csvHeader() {
+		return "game,seed,winner,rounds,millis";
+	}
+
+	/**
+	 * @return the result as one line of comma separated values
+	 */
+	public String toCsv() {
+		return game + "," + seed + "," + (mrXWon ? "MrX" : "Detectives") + "," + rounds + ","
+				+ millis;
+	}
+
+	@Override
+	public String toString() {
+		return "GameResult{" + toCsv() + "}";
+	}
+}
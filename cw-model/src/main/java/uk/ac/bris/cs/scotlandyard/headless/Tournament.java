@@ -0,0 +1,310 @@
+package uk.ac.bris.cs.scotlandyard.headless;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.ai.AI;
+import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Plays standard games between AIs without a display, many games at once.
+ * Each side is played by a {@link PlayerFactory}, or by seeded random moves
+ * if its factory is {@code null}. Factories are made afresh for every game,
+ * and one factory plays both sides if both sides use the same AI. As there is
+ * no display, {@link PlayerFactory#ready} is never called.
+ *
+ * <br>
+ * Run from the command line as
+ *
+ * <pre>
+ * Tournament --mrx "Mr. dropTable$420" --detectives random --games 1000 --threads 8
+ *     --move-time 100 --out results.csv
+ * </pre>
+ *
+ * which prints mr.X's win rate with a 95% confidence interval, and writes
+ * one line per game to the output file. {@code --move-time} is the
+ * milliseconds the AIs may think about a move, passed to them as the
+ * {@code aiMoveTime} system property, {@link #MOVE_TIME} by default unless the
+ * property is set. {@code --list} lists the AIs found on the classpath.
+ */
+public final class Tournament {
+
+	/**
+	 * The name of the side that plays random moves
+	 */
+	public static final String RANDOM = "random";
+
+	/**
+	 * The default milliseconds an AI may think about a move, short enough to
+	 * play several games a second
+	 */
+	public static final long MOVE_TIME = 100;
+
+	private static final Colour[] DETECTIVES = { Colour.BLUE, Colour.GREEN, Colour.RED,
+			Colour.WHITE, Colour.YELLOW };
+	// z value of a 95% confidence interval
+	private static final double Z = 1.96;
+
+	private final Supplier<PlayerFactory> mrX;
+	private final Supplier<PlayerFactory> detectives;
+	private final boolean shared;
+	private final ImmutableGraph<Integer, Transport> graph;
+
+	/**
+	 * @param mrX makes the factory of mr.X's AI, or null for random moves
+	 * @param detectives makes the factory of the detectives' AI, or null for
+	 *        random moves
+	 * @param shared whether one factory plays both sides
+	 * @throws IOException if the standard map can't be read
+	 */
+	public Tournament(Supplier<PlayerFactory> mrX, Supplier<PlayerFactory> detectives,
+			boolean shared) throws IOException {
+		this.mrX = mrX;
+		this.detectives = detectives;
+		this.shared = shared && mrX != null;
+		graph = StandardGame.standardGraph();
+	}
+
+	/**
+	 * Makes a tournament between AIs found on the classpath
+	 *
+	 * @param mrX the name of mr.X's AI or {@link #RANDOM}
+	 * @param detectives the name of the detectives' AI or {@link #RANDOM}
+	 * @return the tournament
+	 * @throws IllegalArgumentException if there is no AI with a given name
+	 * @throws IOException if the standard map can't be read
+	 */
+	public static Tournament between(String mrX, String detectives) throws IOException {
+		requireNonNull(mrX);
+		requireNonNull(detectives);
+		List<AI> ais = mrX.equals(RANDOM) && detectives.equals(RANDOM) ? new ArrayList<>()
+				: AI.scanClasspath();
+		return new Tournament(find(ais, mrX), find(ais, detectives),
+				!mrX.equals(RANDOM) && mrX.equals(detectives));
+	}
+
+	private static Supplier<PlayerFactory> find(List<AI> ais, String name) {
+		if (name.equals(RANDOM)) return null;
+		for (AI ai : ais)
+			if (ai.getName().equals(name)) return ai::instantiate;
+		throw new IllegalArgumentException("No AI named " + name);
+	}
+
+	/**
+	 * Plays one game on the calling thread
+	 *
+	 * @param game the index of the game
+	 * @param seed picks the starting locations and the random moves
+	 * @return the result
+	 */
+	public GameResult play(int game, long seed) {
+		long start = System.nanoTime();
+		Random random = new Random(seed);
+		PlayerFactory mrXFactory = mrX == null ? null : mrX.get();
+		PlayerFactory detectiveFactory = shared ? mrXFactory
+				: detectives == null ? null : detectives.get();
+
+		// The game needs its players before the factories can see it, so the
+		// players are looked up once it has started.
+		Map<Colour, Player> players = new HashMap<>();
+		Player randomPlayer = randomPlayer(random);
+		PlayerConfiguration mrXConfiguration = new PlayerConfiguration.Builder(Colour.BLACK)
+				.using(lookUp(players, Colour.BLACK))
+				.with(StandardGame.generateMrXTickets())
+				.at(StandardGame.generateMrXLocation(random.nextInt()))
+				.build();
+		List<Integer> locations = StandardGame.generateDetectiveLocations(random.nextInt(),
+				DETECTIVES.length);
+		List<PlayerConfiguration> detectiveConfigurations = new ArrayList<>();
+		for (int i = 0; i < DETECTIVES.length; i++)
+			detectiveConfigurations.add(new PlayerConfiguration.Builder(DETECTIVES[i])
+					.using(lookUp(players, DETECTIVES[i]))
+					.with(StandardGame.generateDetectiveTickets())
+					.at(locations.get(i))
+					.build());
+
+		ScotlandYardModel model = new ScotlandYardModel(StandardGame.ROUNDS, graph,
+				mrXConfiguration, detectiveConfigurations.get(0),
+				detectiveConfigurations.subList(1, DETECTIVES.length)
+						.toArray(new PlayerConfiguration[0]));
+
+		try {
+			if (mrXFactory != null)
+				for (Spectator spectator : mrXFactory.createSpectators(model))
+					model.registerSpectator(spectator);
+			if (detectiveFactory != null && detectiveFactory != mrXFactory)
+				for (Spectator spectator : detectiveFactory.createSpectators(model))
+					model.registerSpectator(spectator);
+
+			players.put(Colour.BLACK,
+					mrXFactory == null ? randomPlayer : mrXFactory.createPlayer(Colour.BLACK));
+			for (Colour colour : DETECTIVES)
+				players.put(colour, detectiveFactory == null ? randomPlayer
+						: detectiveFactory.createPlayer(colour));
+
+			while (!model.isGameOver())
+				model.startRotate();
+		} finally {
+			if (mrXFactory != null) mrXFactory.finish();
+			if (detectiveFactory != null && detectiveFactory != mrXFactory)
+				detectiveFactory.finish();
+		}
+
+		return new GameResult(game, seed, model.getWinningPlayers().contains(Colour.BLACK),
+				model.getCurrentRound(), (System.nanoTime() - start) / 1000000);
+	}
+
+	private static Player lookUp(Map<Colour, Player> players, Colour colour) {
+		return (view, location, moves, callback) -> players.get(colour).makeMove(view, location,
+				moves, callback);
+	}
+
+	// Moves are sorted first, so the choice only depends on the seed.
+	private static Player randomPlayer(Random random) {
+		return (view, location, moves, callback) -> {
+			List<Move> sorted = new ArrayList<>(moves);
+			sorted.sort(Comparator.comparing(Move::toString));
+			callback.accept(sorted.get(random.nextInt(sorted.size())));
+		};
+	}
+
+	/**
+	 * Plays games in parallel, game {@code i} is played with seed
+	 * {@code seed + i}
+	 *
+	 * @param games the number of games
+	 * @param seed the seed of the first game
+	 * @param threads the number of games played at once
+	 * @param listener told of every result as its game ends, from the
+	 *        calling thread
+	 * @return the results, in game order
+	 * @throws IllegalStateException if a game fails
+	 */
+	public List<GameResult> run(int games, long seed, int threads,
+			Consumer<GameResult> listener) {
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "tournament");
+			thread.setDaemon(true);
+			return thread;
+		});
+		CompletionService<GameResult> completion = new ExecutorCompletionService<>(executor);
+		try {
+			for (int i = 0; i < games; i++) {
+				int game = i;
+				completion.submit(() -> play(game, seed + game));
+			}
+			List<GameResult> results = new ArrayList<>();
+			for (int i = 0; i < games; i++) {
+				GameResult result = completion.take().get();
+				listener.accept(result);
+				results.add(result);
+			}
+			results.sort(Comparator.comparingInt(GameResult::game));
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A game failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Wilson score interval of a win rate
+	 *
+	 * @param wins the number of games won
+	 * @param games the number of games played
+	 * @return the lower and upper bound of the 95% confidence interval
+	 */
+	public static double[] confidenceInterval(int wins, int games) {
+		if (games == 0) return new double[] { 0, 1 };
+		double p = (double) wins / games;
+		double z2 = Z * Z / games;
+		double centre = (p + z2 / 2) / (1 + z2);
+		double half = Z * Math.sqrt(p * (1 - p) / games + z2 / (4 * games)) / (1 + z2);
+		return new double[] { Math.max(0, centre - half), Math.min(1, centre + half) };
+	}
+
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<>();
+		for (int i = 0; i < args.length; i++) {
+			if (!args[i].startsWith("--"))
+				throw new IllegalArgumentException("Unknown argument " + args[i]);
+			boolean flag = i + 1 == args.length || args[i + 1].startsWith("--");
+			options.put(args[i].substring(2), flag ? "" : args[++i]);
+		}
+
+		if (options.containsKey("list")) {
+			for (AI ai : AI.scanClasspath())
+				System.out.println(ai.getName());
+			return;
+		}
+
+		String mrX = options.getOrDefault("mrx", RANDOM);
+		String detectives = options.getOrDefault("detectives", RANDOM);
+		int games = Integer.parseInt(options.getOrDefault("games", "100"));
+		int threads = Integer.parseInt(options.getOrDefault("threads",
+				String.valueOf(Runtime.getRuntime().availableProcessors())));
+		long seed = Long.parseLong(options.getOrDefault("seed", "0"));
+		// The AIs read their move time when they search, so it's set before any
+		// of them is made.
+		long moveTime = Long.parseLong(options.getOrDefault("move-time",
+				System.getProperty("aiMoveTime", String.valueOf(MOVE_TIME))));
+		if (moveTime < 1) throw new IllegalArgumentException("Move time must be at least 1 ms");
+		System.setProperty("aiMoveTime", String.valueOf(moveTime));
+		Tournament tournament = between(mrX, detectives);
+
+		long start = System.nanoTime();
+		List<GameResult> results;
+		if (options.containsKey("out")) {
+			try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(
+					Paths.get(options.get("out")), StandardCharsets.UTF_8))) {
+				out.println(GameResult.csvHeader());
+				results = tournament.run(games, seed, threads, result -> out.println(result.toCsv()));
+			}
+		} else results = tournament.run(games, seed, threads, result -> {});
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		int wins = 0;
+		long rounds = 0;
+		for (GameResult result : results) {
+			if (result.mrXWon()) wins++;
+			rounds += result.rounds();
+		}
+		double[] interval = confidenceInterval(wins, games);
+		System.out.printf("%s (mr.X) vs %s (detectives): mr.X won %d/%d, %.1f%% [95%% CI %.1f%%, %.1f%%]%n",
+				mrX, detectives, wins, games, 100.0 * wins / games, 100 * interval[0],
+				100 * interval[1]);
+		System.out.printf("average %.1f rounds, %.2f games/s%n", (double) rounds / games,
+				games / seconds);
+	}
+}
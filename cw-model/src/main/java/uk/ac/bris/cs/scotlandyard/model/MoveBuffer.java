@@ -0,0 +1,90 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of packed moves, see {@link PackedMove}. A buffer is meant
+ * to be cleared and refilled; once it has grown to the largest move list it
+ * sees it no longer allocates.
+ */
+public final class MoveBuffer {
+
+	private int[] moves;
+	private int size = 0;
+
+	/**
+	 * Creates an empty buffer
+	 */
+	public MoveBuffer() {
+		this(64);
+	}
+
+	/**
+	 * Creates an empty buffer
+	 *
+	 * @param capacity the initial capacity, must be positive
+	 */
+	public MoveBuffer(int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException("capacity <= 0");
+		moves = new int[capacity];
+	}
+
+	/**
+	 * Appends a packed move
+	 */
+	public void add(int move) {
+		if (size == moves.length) moves = Arrays.copyOf(moves, size * 2);
+		moves[size++] = move;
+	}
+
+	/**
+	 * @param index the index, from zero to {@code size() - 1}
+	 * @return the packed move at the index
+	 */
+	public int get(int index) {
+		if (index >= size) throw new IndexOutOfBoundsException(index + " >= " + size);
+		return moves[index];
+	}
+
+	/**
+	 * Swaps two moves, so that moves can be ordered in place
+	 *
+	 * @param i the index of one move
+	 * @param j the index of the other move
+	 */
+	public void swap(int i, int j) {
+		if (i >= size || j >= size)
+			throw new IndexOutOfBoundsException(Math.max(i, j) + " >= " + size);
+		int move = moves[i];
+		moves[i] = moves[j];
+		moves[j] = move;
+	}
+
+	/**
+	 * @return number of moves in the buffer
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all moves, keeping the capacity
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return true if the packed move is in the buffer
+	 */
+	public boolean contains(int move) {
+		for (int i = 0; i < size; i++)
+			if (moves[i] == move) return true;
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "MoveBuffer{" + "size=" + size + '}';
+	}
+}
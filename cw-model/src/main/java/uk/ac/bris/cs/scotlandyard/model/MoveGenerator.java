@@ -0,0 +1,155 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.NodeBits;
+
+/**
+ * Generates the valid moves of a player as packed moves (see
+ * {@link PackedMove}) into a {@link MoveBuffer}, without allocating. The
+ * rules match the referee: a move may use the ticket of the edge or a secret
+ * ticket, may not end on a blocked node, and a double move needs two tickets
+ * of a kind if it uses the same non-secret ticket twice. If there are no
+ * moves the buffer holds a single {@link PackedMove#PASS}.
+ *
+ * <br>
+ * A generator keeps scratch state, so it must not be shared between threads.
+ */
+public final class MoveGenerator {
+
+	private static final int TICKET_TYPES = Ticket.values().length;
+	private static final int SECRET = Ticket.SECRET.ordinal();
+	private static final int DOUBLE = Ticket.DOUBLE.ordinal();
+
+	private final CompiledGraph<Transport> graph;
+	private final byte[] edgeTickets;
+	// Marks generated (destination, ticket) pairs, a pair is marked when it holds the current stamp.
+	private final int[] marks;
+	private int stamp = 0;
+
+	/**
+	 * Creates a generator for a graph
+	 *
+	 * @param graph the graph; not null, node values must not be larger than
+	 *        {@link PackedMove#MAX_DESTINATION}
+	 */
+	public MoveGenerator(CompiledGraph<Transport> graph) {
+		this.graph = Objects.requireNonNull(graph, "graph == null");
+		if (graph.maxNode() > PackedMove.MAX_DESTINATION)
+			throw new IllegalArgumentException("Graph has nodes above " + PackedMove.MAX_DESTINATION);
+		edgeTickets = new byte[graph.edgeCount()];
+		for (int e = 0; e < edgeTickets.length; e++)
+			edgeTickets[e] = (byte) Ticket.fromTransport(graph.data(e)).ordinal();
+		marks = new int[(graph.maxNode() + 1) * TICKET_TYPES];
+	}
+
+	/**
+	 * @return the graph moves are generated on; never null
+	 */
+	public CompiledGraph<Transport> graph() {
+		return graph;
+	}
+
+	/**
+	 * Generates all valid moves of a player, replacing the contents of the
+	 * buffer
+	 *
+	 * @param location the location of the player
+	 * @param tickets the number of tickets of the player, indexed by
+	 *        {@link Ticket#ordinal()}
+	 * @param blocked the nodes the player cannot move to, see {@link NodeBits}
+	 * @param doubles whether double moves are allowed at all, e.g there are
+	 *        enough rounds left; a double ticket is required as well
+	 * @param moves the buffer to fill; not null
+	 * @return number of moves generated, at least one
+	 */
+	public int generate(int location, int[] tickets, long[] blocked, boolean doubles,
+			MoveBuffer moves) {
+		generateSingles(location, tickets, blocked, moves);
+		if (doubles) appendDoubles(tickets, blocked, moves, moves);
+		if (moves.size() == 0) moves.add(PackedMove.PASS);
+		return moves.size();
+	}
+
+	/**
+	 * Generates the single moves of a player, replacing the contents of the
+	 * buffer. Unlike {@link #generate}, no {@link PackedMove#PASS} is added if
+	 * there are none, so the double moves can be generated later, only if they
+	 * are needed.
+	 *
+	 * @param location the location of the player
+	 * @param tickets the number of tickets of the player, indexed by
+	 *        {@link Ticket#ordinal()}
+	 * @param blocked the nodes the player cannot move to, see {@link NodeBits}
+	 * @param moves the buffer to fill; not null
+	 * @return number of moves generated
+	 */
+	public int generateSingles(int location, int[] tickets, long[] blocked, MoveBuffer moves) {
+		moves.clear();
+		int secret = tickets[SECRET];
+
+		nextStamp();
+		for (int e = graph.firstEdge(location); e < graph.endEdge(location); e++) {
+			int destination = graph.target(e);
+			if (NodeBits.contains(blocked, destination)) continue;
+			int ticket = edgeTickets[e];
+			if (tickets[ticket] > 0) add(moves, PackedMove.single(ticket, destination), ticket, destination);
+			if (secret > 0) add(moves, PackedMove.single(SECRET, destination), SECRET, destination);
+		}
+		return moves.size();
+	}
+
+	/**
+	 * Appends the double moves of a player that start with its single moves.
+	 * Nothing is appended if the player has no double ticket.
+	 *
+	 * @param tickets the number of tickets of the player, indexed by
+	 *        {@link Ticket#ordinal()}
+	 * @param blocked the nodes the player cannot move to, see {@link NodeBits}
+	 * @param singles the single moves from {@link #generateSingles}; may be
+	 *        the same buffer as moves, only its moves up to the call are used
+	 * @param moves the buffer to append to; not null
+	 * @return number of moves appended
+	 */
+	public int appendDoubles(int[] tickets, long[] blocked, MoveBuffer singles, MoveBuffer moves) {
+		if (tickets[DOUBLE] == 0) return 0;
+		int secret = tickets[SECRET];
+		int start = moves.size();
+		int count = singles.size();
+		for (int i = 0; i < count; i++) {
+			int first = singles.get(i);
+			int firstTicket = PackedMove.ticket(first);
+			int from = PackedMove.destination(first);
+
+			nextStamp();
+			for (int e = graph.firstEdge(from); e < graph.endEdge(from); e++) {
+				int destination = graph.target(e);
+				if (NodeBits.contains(blocked, destination)) continue;
+				int ticket = edgeTickets[e];
+				int needed = ticket == firstTicket ? 1 : 0;
+				if (tickets[ticket] > needed)
+					add(moves, PackedMove.doubleMove(first, ticket, destination), ticket, destination);
+				if (secret > 0)
+					add(moves, PackedMove.doubleMove(first, SECRET, destination), SECRET, destination);
+			}
+		}
+		return moves.size() - start;
+	}
+
+	private void add(MoveBuffer moves, int move, int ticket, int destination) {
+		int mark = destination * TICKET_TYPES + ticket;
+		if (marks[mark] == stamp) return;
+		marks[mark] = stamp;
+		moves.add(move);
+	}
+
+	private void nextStamp() {
+		if (++stamp == 0) {
+			Arrays.fill(marks, 0);
+			stamp = 1;
+		}
+	}
+
+}
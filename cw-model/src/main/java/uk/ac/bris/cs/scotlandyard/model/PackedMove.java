@@ -0,0 +1,161 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+/**
+ * Static helpers for moves packed into a single {@code int}, as produced by
+ * {@link MoveGenerator}. A packed move holds no colour; the colour is known
+ * from whose moves are being generated.
+ *
+ * <br>
+ * The low 16 bits hold the first (or only) ticket and destination, the high
+ * 16 bits the second ticket and destination of a double move. Each half is
+ * {@code (ticket.ordinal() + 1) << 13 | destination}, so destinations up to
+ * {@link #MAX_DESTINATION} fit and an empty half is zero. A pass is
+ * {@link #PASS}.
+ */
+public final class PackedMove {
+
+	/**
+	 * The packed pass move
+	 */
+	public static final int PASS = 0;
+
+	/**
+	 * Returned by {@link #fromMove(Move)} for moves that cannot be packed, it
+	 * never equals a generated move
+	 */
+	public static final int NONE = -1;
+
+	/**
+	 * The largest destination a packed move can hold
+	 */
+	public static final int MAX_DESTINATION = (1 << 13) - 1;
+
+	private static final int HALF_BITS = 16;
+	private static final int HALF_MASK = (1 << HALF_BITS) - 1;
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	private PackedMove() {}
+
+	/**
+	 * Packs a single ticket move
+	 *
+	 * @param ticket the ticket ordinal
+	 * @param destination the destination
+	 * @return the packed move
+	 */
+	public static int single(int ticket, int destination) {
+		return (ticket + 1) << 13 | destination;
+	}
+
+	/**
+	 * Packs a double move from its packed first move and a second ticket
+	 *
+	 * @param first the packed single first move
+	 * @param ticket the ticket ordinal of the second move
+	 * @param destination the final destination
+	 * @return the packed move
+	 */
+	public static int doubleMove(int first, int ticket, int destination) {
+		return single(ticket, destination) << HALF_BITS | first;
+	}
+
+	/**
+	 * @return true if the move is a double move
+	 */
+	public static boolean isDouble(int move) {
+		return move >>> HALF_BITS != 0;
+	}
+
+	/**
+	 * @return the packed first move of a double move, or the move itself
+	 */
+	public static int first(int move) {
+		return move & HALF_MASK;
+	}
+
+	/**
+	 * @return the packed second move of a double move
+	 */
+	public static int second(int move) {
+		return move >>> HALF_BITS;
+	}
+
+	/**
+	 * @return the ticket ordinal of a single move or of the first half of a
+	 *         double move
+	 */
+	public static int ticket(int move) {
+		return ((move & HALF_MASK) >>> 13) - 1;
+	}
+
+	/**
+	 * @return the destination of a single move or of the first half of a
+	 *         double move
+	 */
+	public static int destination(int move) {
+		return move & MAX_DESTINATION;
+	}
+
+	/**
+	 * @return the destination after the whole move, or zero for a pass
+	 */
+	public static int finalDestination(int move) {
+		return destination(isDouble(move) ? second(move) : move);
+	}
+
+	/**
+	 * Unpacks a move
+	 *
+	 * @param colour the colour of the player making the move; not null
+	 * @param move the packed move
+	 * @return the move; never null
+	 */
+	public static Move toMove(Colour colour, int move) {
+		if (move == PASS) return new PassMove(colour);
+		TicketMove first = new TicketMove(colour, TICKETS[ticket(move)], destination(move));
+		if (!isDouble(move)) return first;
+		int second = second(move);
+		return new DoubleMove(colour, first,
+				new TicketMove(colour, TICKETS[ticket(second)], destination(second)));
+	}
+
+	/**
+	 * Packs a move, dropping its colour
+	 *
+	 * @param move the move; not null
+	 * @return the packed move, or {@link #NONE} if the move cannot be packed,
+	 *         for example if a double move mixes colours
+	 */
+	public static int fromMove(Move move) {
+		int[] packed = {NONE};
+		move.visit(new MoveVisitor() {
+			@Override
+			public void visit(PassMove move) {
+				packed[0] = PASS;
+			}
+
+			@Override
+			public void visit(TicketMove move) {
+				packed[0] = fromTicketMove(move);
+			}
+
+			@Override
+			public void visit(DoubleMove move) {
+				int first = fromTicketMove(move.firstMove());
+				int second = fromTicketMove(move.secondMove());
+				if (first != NONE && second != NONE
+						&& move.firstMove().colour() == move.colour()
+						&& move.secondMove().colour() == move.colour())
+					packed[0] = second << HALF_BITS | first;
+			}
+		});
+		return packed[0];
+	}
+
+	private static int fromTicketMove(TicketMove move) {
+		if (move.ticket() == null || move.destination() < 0
+				|| move.destination() > MAX_DESTINATION) return NONE;
+		return single(move.ticket().ordinal(), move.destination());
+	}
+
+}
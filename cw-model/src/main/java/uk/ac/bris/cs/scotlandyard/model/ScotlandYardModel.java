@@ -4,14 +4,22 @@ import java.util.*;
 import java.util.List;
 import java.util.function.Consumer;
 
-import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
 import uk.ac.bris.cs.gamekit.graph.Graph;
 import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.NodeBits;
 
 public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move>, MoveVisitor{
 
     private List<Boolean> rounds;
     private Graph<Integer, Transport> graph;
+    private CompiledGraph<Transport> compiledGraph;
+    // Move generation scratch, reused by the calls that drive the game, accept and startRotate. The view queries
+    // must not touch it, see mustPass.
+    private MoveGenerator generator;
+    private MoveBuffer moveBuffer = new MoveBuffer();
+    private long[] occupied;
+    private int[] ticketCounts = new int[Ticket.values().length];
     private List<ScotlandYardPlayer> players;
     private HashSet<Spectator> spectators = new HashSet<>();
     private int player = 0, round = 0;
@@ -31,6 +39,11 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move>, Move
         if(rounds.isEmpty()) throw new IllegalArgumentException("Rounds is empty");
         if(graph.isEmpty()) throw new IllegalArgumentException("Graph is empty");
 
+        // Compiled once, used for move generation.
+        compiledGraph = CompiledGraph.compile(graph, Transport.class);
+        generator = new MoveGenerator(compiledGraph);
+        occupied = NodeBits.create(compiledGraph.maxNode());
+
         // mrX colour check.
 
         if(mrX.colour != Colour.BLACK) throw new IllegalArgumentException("Mr. X should be black");
@@ -113,9 +126,8 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move>, Move
                 break;
             }
 
-        // Generates the collection of valid moves and checks that the argument is valid.
-        HashSet<Move> validMoves = getValidMovesForPlayer(player);
-        if(!validMoves.contains(m))
+        // Generates the valid moves and checks that the argument is one of them.
+        if(m.colour() != player.colour() || !generateMoves(player).contains(PackedMove.fromMove(m)))
             throw new IllegalArgumentException("Player accepted a non-valid move");
 
         // Updates last known mr.X location.
@@ -134,79 +146,55 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move>, Move
     }
 
     /**
-     * Iterates all players and checks if location l is free.
-     *
-     * @param c the colour of the player to be excluded from the check
-     * @param l the number of the node to check
-     * @return true or false, depending if location is free
-     */
-    private boolean isLocationFree(Colour c, Integer l){
-        for(ScotlandYardPlayer p : players)
-            if(p.location() == l && p.colour() != c && p.colour() != Colour.BLACK)
-                return false;
-        return true;
-    }
-
-    /**
-     * Generates a HashSet of TicketMoves with all possible 'simple' moves for a player
+     * Generates all valid moves for a player as packed moves, see PackedMove
      *
      * @param p the player to generate moves for; not null
-     * @return a HashSet of all available simple moves for player
+     * @return the shared move buffer, valid until the next call
      * @throws NullPointerException if p is null
      */
-    private HashSet<TicketMove> getMovesFromPlayerLocation(ScotlandYardPlayer p){
+    private MoveBuffer generateMoves(ScotlandYardPlayer p){
         if(p == null)
             throw new NullPointerException("Player is null");
 
-        HashSet<TicketMove> moves = new HashSet<>();
-        // Iterates through all available edges from current player position.
-        for(Edge<Integer, Transport> e : graph.getEdgesFrom(graph.getNode(p.location()))){
-            if(isLocationFree(p.colour(), e.destination().value())){
-                // Checks for normal ticket moves.
-                if(p.tickets().get(Ticket.fromTransport(e.data())) > 0)
-                    moves.add(new TicketMove(p.colour(), Ticket.fromTransport(e.data()), e.destination().value()));
-                // Checks for secret ticket move.
-                if(p.tickets().get(Ticket.SECRET) > 0)
-                    moves.add(new TicketMove(p.colour(), Ticket.SECRET, e.destination().value()));
-            }
-        }
-        return moves;
+        // Locations of the other detectives are blocked.
+        NodeBits.clear(occupied);
+        for(ScotlandYardPlayer other : players)
+            if(other.isDetective() && other.colour() != p.colour())
+                NodeBits.add(occupied, other.location());
+
+        for(Ticket t : Ticket.values())
+            ticketCounts[t.ordinal()] = p.tickets().getOrDefault(t, 0);
+
+        // Double moves need two rounds left.
+        generator.generate(p.location(), ticketCounts, occupied, round + 1 < rounds.size(), moveBuffer);
+        return moveBuffer;
     }
 
     /**
-     * Generates a HashSet of Moves with all possible double moves for a player
+     * Checks whether a player has no moves and has to pass. Only single moves are looked for, as there are no double
+     * moves without them. Unlike generateMoves it uses no scratch, so the view queries that call it, isGameOver and
+     * getWinningPlayers, don't modify the model
      *
-     * @param simpleMoves = the collection of initial moves that are available to the player; not null
-     * @param p           the player to generate moves for; not null
-     * @return a HashSet of all available double moves for player
-     * @throws NullPointerException if p or simpleMoves is null
+     * @param p the player to check; not null
+     * @return true if the only valid move is a pass
      */
-    private HashSet<Move> getDoubleMovesFromPlayerLocation(Set<TicketMove> simpleMoves, ScotlandYardPlayer p){
-        if(simpleMoves == null)
-            throw new NullPointerException("SimpleMoves is null");
-        if(p == null)
-            throw new NullPointerException("Player is null");
-
-        HashSet<Move> moves = new HashSet<>();
-        // Iterates through all available simple moves in order to generate double moves.
-        for(TicketMove m : simpleMoves){
-            // Iterates through all available edges from simple move position.
-            for(Edge<Integer, Transport> e : graph.getEdgesFrom(graph.getNode(m.destination()))){
-                if(isLocationFree(p.colour(), e.destination().value())){
-                    int c = 0;
-                    // If using the same ticket, player must have at least 2.
-                    if(Ticket.fromTransport(e.data()) == m.ticket())
-                        c = 1;
-                    // Checks for normal double moves.
-                    if(p.tickets().get(Ticket.fromTransport(e.data())) > c)
-                        moves.add(new DoubleMove(p.colour(), m, new TicketMove(p.colour(), Ticket.fromTransport(e.data()), e.destination().value())));
-                    // Checks for double moves containing secret tickets.
-                    if(p.tickets().get(Ticket.SECRET) > 0)
-                        moves.add(new DoubleMove(p.colour(), m, new TicketMove(p.colour(), Ticket.SECRET, e.destination().value())));
-                }
-            }
+    private boolean mustPass(ScotlandYardPlayer p){
+        boolean secret = p.tickets().getOrDefault(Ticket.SECRET, 0) > 0;
+        for(int e = compiledGraph.firstEdge(p.location()); e < compiledGraph.endEdge(p.location()); e++){
+            if(isBlockedFor(p, compiledGraph.target(e)))
+                continue;
+            if(secret || p.tickets().getOrDefault(Ticket.fromTransport(compiledGraph.data(e)), 0) > 0)
+                return false;
         }
-        return moves;
+        return true;
+    }
+
+    // True if a detective other than the player is at the location.
+    private boolean isBlockedFor(ScotlandYardPlayer p, int location){
+        for(ScotlandYardPlayer other : players)
+            if(other.isDetective() && other.colour() != p.colour() && other.location() == location)
+                return true;
+        return false;
     }
 
     /**
@@ -217,21 +205,11 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move>, Move
      * @throws NullPointerException if p is null
      */
     private HashSet<Move> getValidMovesForPlayer(ScotlandYardPlayer p){
-        if(p == null)
-            throw new NullPointerException("Player is null");
+        MoveBuffer packed = generateMoves(p);
 
-        // Make a HashSet for all valid simple moves.
-        HashSet<TicketMove> simpleMoves = getMovesFromPlayerLocation(p);
-
-        HashSet<Move> moves = new HashSet<>(simpleMoves);
-
-        // If player has a double ticket, add all double moves.
-        if(p.tickets().getOrDefault(Ticket.DOUBLE, 0) > 0 && round + 1 < rounds.size())
-            moves.addAll(getDoubleMovesFromPlayerLocation(simpleMoves, p));
-
-        // If player has no moves available, add pass move.
-        if(moves.size() == 0)
-            moves.add(new PassMove(p.colour()));
+        HashSet<Move> moves = new HashSet<>();
+        for(int i = 0; i < packed.size(); i++)
+            moves.add(PackedMove.toMove(p.colour(), packed.get(i)));
 
         return moves;
     }
@@ -396,7 +374,7 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move>, Move
 
         // Check for detectives being stuck
         for(ScotlandYardPlayer p : players)
-            if(p.isDetective() && !getValidMovesForPlayer(p).contains(new PassMove(p.colour())))
+            if(p.isDetective() && !mustPass(p))
                 detectivesStuck = false;
 
         // Check for MrX capture
@@ -408,7 +386,7 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move>, Move
         if(detectivesStuck || (round == rounds.size() && player == 0))
             set.add(Colour.BLACK);
         // Detectives win
-        else if(getValidMovesForPlayer(players.get(0)).contains(new PassMove(Colour.BLACK)) || captured)
+        else if(mustPass(players.get(0)) || captured)
             for(ScotlandYardPlayer p : players)
                 if(p.isDetective())
                     set.add(p.colour());
@@ -446,13 +424,13 @@ public class ScotlandYardModel implements ScotlandYardGame, Consumer<Move>, Move
             return true;
 
         // MrX Cannot move
-        if(getCurrentPlayer() == Colour.BLACK && getValidMovesForPlayer(players.get(0)).contains(new PassMove(Colour.BLACK)))
+        if(getCurrentPlayer() == Colour.BLACK && mustPass(players.get(0)))
             return true;
 
         // Detectives stuck
         boolean detectivesStuck = true;
         for(ScotlandYardPlayer p : players)
-            if(p.isDetective() && !getValidMovesForPlayer(p).contains(new PassMove(p.colour())))
+            if(p.isDetective() && !mustPass(p))
                 detectivesStuck = false;
         if(detectivesStuck)
             return true;
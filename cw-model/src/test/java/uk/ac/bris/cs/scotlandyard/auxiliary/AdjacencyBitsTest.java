@@ -0,0 +1,59 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.gamekit.graph.AdjacencyBits;
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.NodeBits;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader.fromLines;
+
+/**
+ * Tests for {@link AdjacencyBits}
+ */
+public class AdjacencyBitsTest {
+
+	private final CompiledGraph<Transport> graph = CompiledGraph.compile(
+			fromLines(asList("4 4", "1", "2", "3", "70", "1 2 Taxi", "1 3 Bus", "2 70 Taxi",
+					"3 70 Ferry")),
+			Transport.class);
+	private final AdjacencyBits adjacency = new AdjacencyBits(graph);
+
+	private long[] set(int... nodes) {
+		long[] bits = NodeBits.create(graph.maxNode());
+		for (int node : nodes)
+			NodeBits.add(bits, node);
+		return bits;
+	}
+
+	@Test
+	public void testStepFollowsEdgeData() {
+		long[] to = set();
+		adjacency.step(set(1), Transport.TAXI.ordinal(), to);
+		assertThat(to).isEqualTo(set(2));
+		adjacency.step(set(1, 3), Transport.FERRY.ordinal(), to);
+		assertThat(to).isEqualTo(set(70));
+		adjacency.step(set(2, 3), Transport.BUS.ordinal(), to);
+		assertThat(to).isEqualTo(set(1));
+	}
+
+	@Test
+	public void testStepAnyFollowsAllEdges() {
+		long[] to = set(2);
+		adjacency.stepAny(set(1, 70), to);
+		assertThat(to).isEqualTo(set(2, 3));
+		assertThat(adjacency.words()).isEqualTo(2);
+	}
+
+	@Test
+	public void testSameSetShouldThrow() {
+		long[] bits = set(1);
+		assertThatThrownBy(() -> adjacency.stepAny(bits, bits))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
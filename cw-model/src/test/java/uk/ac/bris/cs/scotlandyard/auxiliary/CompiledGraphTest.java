@@ -0,0 +1,79 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader.fromLines;
+
+/**
+ * Tests for {@link CompiledGraph}
+ */
+public class CompiledGraphTest {
+
+	@Test
+	public void testSmallGraph() {
+		CompiledGraph<Transport> graph = CompiledGraph.compile(
+				fromLines(asList("3 2", "1", "2", "3", "1 2 Taxi", "2 3 Ferry")),
+				Transport.class);
+		assertThat(graph.size()).isEqualTo(3);
+		assertThat(graph.maxNode()).isEqualTo(3);
+		assertThat(graph.edgeCount()).isEqualTo(4);
+		assertThat(graph.containsNode(0)).isFalse();
+		assertThat(graph.containsNode(2)).isTrue();
+		assertThat(graph.containsNode(4)).isFalse();
+		assertThat(graph.degree(2)).isEqualTo(2);
+		int edge = graph.firstEdge(1);
+		assertThat(graph.target(edge)).isEqualTo(2);
+		assertThat(graph.data(edge)).isEqualTo(Transport.TAXI);
+		assertThat(graph.dataOrdinal(edge)).isEqualTo(Transport.TAXI.ordinal());
+	}
+
+	@Test
+	public void testStandardGraphMatchesSource() throws IOException {
+		ImmutableGraph<Integer, Transport> source = StandardGame.standardGraph();
+		CompiledGraph<Transport> graph = CompiledGraph.compile(source, Transport.class);
+		assertThat(graph.size()).isEqualTo(source.size());
+		for (Node<Integer> node : source.getNodes()) {
+			List<Edge<Integer, Transport>> compiled = new ArrayList<>();
+			for (int e = graph.firstEdge(node.value()); e < graph.endEdge(node.value()); e++)
+				compiled.add(new Edge<>(node, new Node<>(graph.target(e)), graph.data(e)));
+			assertThat(compiled).containsExactlyElementsOf(source.getEdgesFrom(node));
+		}
+	}
+
+	@Test
+	public void testFingerprintFollowsEdges() {
+		CompiledGraph<Transport> graph = CompiledGraph.compile(
+				fromLines(asList("3 2", "1", "2", "3", "1 2 Taxi", "2 3 Ferry")),
+				Transport.class);
+		assertThat(CompiledGraph.compile(
+				fromLines(asList("3 2", "1", "2", "3", "1 2 Taxi", "2 3 Ferry")),
+				Transport.class).fingerprint()).isEqualTo(graph.fingerprint());
+		assertThat(CompiledGraph.compile(
+				fromLines(asList("3 2", "1", "2", "3", "1 2 Bus", "2 3 Ferry")),
+				Transport.class).fingerprint()).isNotEqualTo(graph.fingerprint());
+		assertThat(CompiledGraph.compile(
+				fromLines(asList("3 2", "1", "2", "3", "1 3 Taxi", "2 3 Ferry")),
+				Transport.class).fingerprint()).isNotEqualTo(graph.fingerprint());
+	}
+
+	@Test
+	public void testNullGraphShouldThrow() {
+		assertThatThrownBy(() -> CompiledGraph.compile(null, Transport.class))
+				.isInstanceOf(NullPointerException.class);
+	}
+
+}
@@ -0,0 +1,113 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.NodeBits;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.PassMove;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.RED;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader.fromLines;
+import static uk.ac.bris.cs.scotlandyard.model.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.Ticket.TAXI;
+
+/**
+ * Tests for {@link MoveGenerator} and {@link PackedMove}
+ */
+public class MoveGeneratorTest {
+
+	// 1 and 2 are joined by both a taxi and a bus edge.
+	private final CompiledGraph<Transport> graph = CompiledGraph.compile(
+			fromLines(asList("3 3", "1", "2", "3", "1 2 Taxi", "1 2 Bus", "2 3 Taxi")),
+			Transport.class);
+	private final MoveGenerator generator = new MoveGenerator(graph);
+	private final long[] noneBlocked = NodeBits.create(graph.maxNode());
+
+	private static int[] tickets(int taxi, int bus, int underground, int doubles, int secret) {
+		return new int[]{taxi, bus, underground, doubles, secret};
+	}
+
+	private Set<Move> generate(Colour colour, int location, int[] tickets, long[] blocked,
+			boolean doubles) {
+		MoveBuffer buffer = new MoveBuffer(1);
+		generator.generate(location, tickets, blocked, doubles, buffer);
+		Set<Move> moves = new HashSet<>();
+		for (int i = 0; i < buffer.size(); i++)
+			assertThat(moves.add(PackedMove.toMove(colour, buffer.get(i)))).isTrue();
+		return moves;
+	}
+
+	@Test
+	public void testSecretMovesAreNotDuplicated() {
+		assertThat(generate(BLACK, 1, tickets(1, 1, 0, 0, 1), noneBlocked, false))
+				.containsExactlyInAnyOrder(
+						new TicketMove(BLACK, TAXI, 2),
+						new TicketMove(BLACK, BUS, 2),
+						new TicketMove(BLACK, SECRET, 2));
+	}
+
+	@Test
+	public void testDoubleMoveWithSameTicketNeedsTwoTickets() {
+		assertThat(generate(BLACK, 2, tickets(1, 0, 0, 1, 0), noneBlocked, true))
+				.containsExactlyInAnyOrder(
+						new TicketMove(BLACK, TAXI, 1),
+						new TicketMove(BLACK, TAXI, 3));
+		assertThat(generate(BLACK, 2, tickets(2, 0, 0, 1, 0), noneBlocked, true))
+				.contains(new DoubleMove(BLACK, TAXI, 1, TAXI, 2))
+				.hasSize(4);
+		assertThat(generate(BLACK, 2, tickets(2, 0, 0, 1, 0), noneBlocked, false))
+				.hasSize(2);
+	}
+
+	@Test
+	public void testBlockedNodesAndPass() {
+		long[] blocked = NodeBits.create(graph.maxNode());
+		NodeBits.add(blocked, 2);
+		assertThat(generate(RED, 1, tickets(5, 5, 5, 0, 0), blocked, false))
+				.containsExactly(new PassMove(RED));
+		assertThat(generate(RED, 3, tickets(0, 5, 5, 0, 0), noneBlocked, false))
+				.containsExactly(new PassMove(RED));
+	}
+
+	@Test
+	public void testStagedGenerationMatchesGenerate() {
+		int[] tickets = tickets(2, 1, 0, 1, 1);
+		MoveBuffer all = new MoveBuffer();
+		generator.generate(2, tickets, noneBlocked, true, all);
+		MoveBuffer singles = new MoveBuffer();
+		MoveBuffer doubles = new MoveBuffer();
+		assertThat(generator.generateSingles(2, tickets, noneBlocked, singles)).isEqualTo(5);
+		assertThat(generator.appendDoubles(tickets, noneBlocked, singles, doubles))
+				.isEqualTo(all.size() - singles.size());
+		for (int i = 0; i < all.size(); i++)
+			assertThat(all.get(i)).isEqualTo(i < singles.size() ? singles.get(i)
+					: doubles.get(i - singles.size()));
+		assertThat(generator.appendDoubles(tickets(2, 1, 0, 0, 1), noneBlocked, singles, doubles))
+				.isZero();
+	}
+
+	@Test
+	public void testPackingRoundTrips() {
+		for (Move move : asList(new PassMove(BLACK), new TicketMove(BLACK, BUS, 199),
+				new DoubleMove(BLACK, SECRET, 13, TAXI, 14)))
+			assertThat(PackedMove.toMove(BLACK, PackedMove.fromMove(move))).isEqualTo(move);
+		assertThat(PackedMove.fromMove(new DoubleMove(BLACK, new TicketMove(RED, TAXI, 1),
+				new TicketMove(BLACK, TAXI, 2)))).isEqualTo(PackedMove.NONE);
+	}
+
+}
@@ -0,0 +1,72 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.NodeBits;
+import uk.ac.bris.cs.gamekit.graph.ReachBits;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.gamekit.graph.ReachBits.ANY;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader.fromLines;
+
+/**
+ * Tests for {@link ReachBits}
+ */
+public class ReachBitsTest {
+
+	private final CompiledGraph<Transport> graph = CompiledGraph.compile(
+			fromLines(asList("4 4", "1", "2", "3", "70", "1 2 Taxi", "1 3 Bus", "2 70 Taxi",
+					"3 70 Ferry")),
+			Transport.class);
+	private final ReachBits reach = new ReachBits(graph);
+
+	private long[] set(int... nodes) {
+		long[] bits = NodeBits.create(graph.maxNode());
+		for (int node : nodes)
+			NodeBits.add(bits, node);
+		return bits;
+	}
+
+	@Test
+	public void testOneStepFollowsEdgeData() {
+		long[] to = set(70);
+		reach.oneStep(1, ANY, to);
+		assertThat(to).isEqualTo(set(2, 3));
+		reach.oneStep(70, Transport.FERRY.ordinal(), to);
+		assertThat(to).isEqualTo(set(3));
+		reach.oneStep(2, Transport.BUS.ordinal(), to);
+		assertThat(to).isEqualTo(set());
+	}
+
+	@Test
+	public void testTwoStepsFollowEdgeDataOfEachStep() {
+		long[] to = set();
+		reach.twoSteps(1, Transport.TAXI.ordinal(), Transport.TAXI.ordinal(), to);
+		assertThat(to).isEqualTo(set(1, 70));
+		reach.twoSteps(1, Transport.BUS.ordinal(), Transport.FERRY.ordinal(), to);
+		assertThat(to).isEqualTo(set(70));
+		reach.twoSteps(1, Transport.BUS.ordinal(), ANY, to);
+		assertThat(to).isEqualTo(set(1, 70));
+		reach.twoSteps(1, ANY, ANY, to);
+		assertThat(to).isEqualTo(set(1, 70));
+		reach.twoSteps(2, ANY, Transport.FERRY.ordinal(), to);
+		assertThat(to).isEqualTo(set(3));
+	}
+
+	@Test
+	public void testTwoStepsAvoidNodesOnEitherStep() {
+		long[] to = set();
+		reach.twoSteps(1, ANY, ANY, set(2), to);
+		assertThat(to).isEqualTo(set(1, 70));
+		reach.twoSteps(1, Transport.TAXI.ordinal(), ANY, set(2), to);
+		assertThat(to).isEqualTo(set());
+		reach.twoSteps(1, ANY, ANY, set(70), to);
+		assertThat(to).isEqualTo(set(1));
+		reach.twoSteps(1, ANY, ANY, set(2, 3), to);
+		assertThat(to).isEqualTo(set());
+	}
+
+}
@@ -0,0 +1,53 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.scotlandyard.headless.GameResult;
+import uk.ac.bris.cs.scotlandyard.headless.Tournament;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for {@link Tournament}
+ */
+public class TournamentTest {
+
+	private static List<String> csv(List<GameResult> results) {
+		List<String> lines = new ArrayList<>();
+		for (GameResult result : results)
+			lines.add(result.toCsv().substring(0, result.toCsv().lastIndexOf(',')));
+		return lines;
+	}
+
+	@Test
+	public void testRandomGamesDependOnSeedOnly() throws Exception {
+		Tournament tournament = Tournament.between(Tournament.RANDOM, Tournament.RANDOM);
+		List<String> seen = new ArrayList<>();
+		List<GameResult> results = tournament.run(10, 42, 3, result -> seen.add(result.toCsv()));
+		assertThat(seen).hasSize(10);
+		assertThat(results).extracting(GameResult::game).containsExactly(0, 1, 2, 3, 4, 5, 6, 7,
+				8, 9);
+		assertThat(csv(tournament.run(10, 42, 1, result -> {}))).isEqualTo(csv(results));
+	}
+
+	@Test
+	public void testUnknownAIShouldThrow() {
+		assertThatThrownBy(() -> Tournament.between("no such AI", Tournament.RANDOM))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void testConfidenceInterval() {
+		double[] interval = Tournament.confidenceInterval(50, 100);
+		assertThat(interval[0]).isCloseTo(0.404, within(0.001));
+		assertThat(interval[1]).isCloseTo(0.596, within(0.001));
+		assertThat(Tournament.confidenceInterval(0, 10)[0]).isCloseTo(0, within(1e-9));
+		assertThat(Tournament.confidenceInterval(10, 10)[1]).isCloseTo(1, within(1e-9));
+	}
+
+}